@@ -0,0 +1,80 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The Besu BOM and artifacts catalog of the benchmarks, from the resources of the jmh source set,
+ * scaled by copying their dependencies under other groups, so that larger inputs keep the shape of
+ * the real ones.
+ */
+final class BesuBenchmarkFixtures {
+  static final String BESU_VERSION = "25.6.0";
+
+  private static final Pattern BOM_DEPENDENCIES =
+      Pattern.compile("(?s)(.*<dependencyManagement>\\s*<dependencies>)(.*)(</dependencies>.*)");
+
+  private BesuBenchmarkFixtures() {}
+
+  /** The Besu BOM, with its managed dependencies repeated {@code scale} times. */
+  static byte[] bom(final int scale) {
+    Matcher matcher = BOM_DEPENDENCIES.matcher(resource("bom-" + BESU_VERSION + ".pom"));
+    if (!matcher.matches()) {
+      throw new IllegalStateException("No dependency management in the Besu BOM fixture");
+    }
+    StringBuilder bom = new StringBuilder(matcher.group(1));
+    for (int copy = 0; copy < scale; copy++) {
+      bom.append(
+          copy == 0
+              ? matcher.group(2)
+              : matcher.group(2).replace("<groupId>", "<groupId>scaled" + copy + "."));
+    }
+    return bom.append(matcher.group(3)).toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** The Besu artifacts catalog, with its entries repeated {@code scale} times. */
+  static String catalog(final int scale) {
+    String catalog = resource("besu-artifacts-catalog-" + BESU_VERSION + ".json");
+    String entries = catalog.substring(catalog.indexOf('[') + 1, catalog.lastIndexOf(']'));
+    StringBuilder scaled = new StringBuilder("[");
+    for (int copy = 0; copy < scale; copy++) {
+      if (copy > 0) {
+        scaled
+            .append(',')
+            .append(entries.replace("\"group\":\"", "\"group\":\"scaled" + copy + "."));
+      } else {
+        scaled.append(entries);
+      }
+    }
+    return scaled.append(']').toString();
+  }
+
+  private static String resource(final String name) {
+    try (InputStream in = BesuBenchmarkFixtures.class.getResourceAsStream("/besu/" + name)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing benchmark fixture " + name);
+      }
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read benchmark fixture " + name, e);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The lookups run for each component of the dependency graphs of a plugin: the old Besu coordinates
+ * check of the component selection rule, the Besu provided dependency lookup, and the plugin only
+ * filter of the runtime classpath, over a classpath of Besu provided, old Besu and plugin only
+ * components.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BesuDependencyLookupBenchmark {
+  /** How many times the dependencies of the Besu fixtures, and the classpath, are repeated. */
+  @Param({"1", "10", "100"})
+  public int scale;
+
+  private BesuProvidedDependencyIndex besuProvidedDependencies;
+  private ModuleComponentIdentifier[] components;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<BesuProvidedDependency> catalogDependencies =
+        BesuPluginLibrary.parseBesuDependencyCatalog(BesuBenchmarkFixtures.catalog(scale));
+    besuProvidedDependencies = new BesuProvidedDependencyIndex(catalogDependencies);
+
+    List<ModuleComponentIdentifier> classpath = new ArrayList<>();
+    for (BesuProvidedDependency dependency : catalogDependencies) {
+      classpath.add(new Component(dependency.group(), dependency.name(), dependency.version()));
+    }
+    for (int copy = 0; copy < scale; copy++) {
+      for (String oldCoordinates : BesuOld2NewCoordinatesMapping.getOld2NewCoordinates().keySet()) {
+        String[] parts = oldCoordinates.split(":");
+        classpath.add(new Component(parts[0], parts[1], BesuBenchmarkFixtures.BESU_VERSION));
+      }
+    }
+    int pluginOnly = classpath.size();
+    for (int i = 0; i < pluginOnly; i++) {
+      classpath.add(new Component("com.acme.group" + i % 20, "library-" + i, "1.0"));
+    }
+    components = classpath.toArray(ModuleComponentIdentifier[]::new);
+  }
+
+  @Benchmark
+  public int old2NewCoordinates() {
+    int oldCoordinates = 0;
+    for (ModuleComponentIdentifier component : components) {
+      if (BesuOld2NewCoordinatesMapping.isOldCoordinate(
+          component.getGroup(), component.getModule())) {
+        oldCoordinates++;
+      }
+    }
+    return oldCoordinates;
+  }
+
+  @Benchmark
+  public int providedByBesu() {
+    int provided = 0;
+    for (ModuleComponentIdentifier component : components) {
+      if (besuProvidedDependencies.find(component.getGroup(), component.getModule()) != null) {
+        provided++;
+      }
+    }
+    return provided;
+  }
+
+  @Benchmark
+  public int isPluginOnly() {
+    int pluginOnly = 0;
+    for (ModuleComponentIdentifier component : components) {
+      if (CollectPluginOnlyRuntimeArtifactsTask.isPluginOnly(besuProvidedDependencies, component)) {
+        pluginOnly++;
+      }
+    }
+    return pluginOnly;
+  }
+
+  /** A component of the classpath, like the ones Gradle passes to the component filters. */
+  private record Component(String group, String module, String version)
+      implements ModuleComponentIdentifier {
+    @Override
+    public String getGroup() {
+      return group;
+    }
+
+    @Override
+    public String getModule() {
+      return module;
+    }
+
+    @Override
+    public String getVersion() {
+      return version;
+    }
+
+    @Override
+    public ModuleIdentifier getModuleIdentifier() {
+      // Not used by the lookups
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getDisplayName() {
+      return group + ":" + module + ":" + version;
+    }
+  }
+}
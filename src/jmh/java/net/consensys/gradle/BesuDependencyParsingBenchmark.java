@@ -0,0 +1,106 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.xml.stream.XMLStreamException;
+
+import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The parsing of the Besu BOM and artifacts catalog, and their merge in the dependency model, that
+ * a build runs once per Besu version it has not cached yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BesuDependencyParsingBenchmark {
+  /** How many times the dependencies of the Besu fixtures are repeated. */
+  @Param({"1", "10", "100"})
+  public int scale;
+
+  private byte[] bom;
+  private String catalog;
+  private Path besuMainJar;
+  private List<BesuProvidedDependency> bomDependencies;
+  private List<BesuProvidedDependency> catalogDependencies;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, XMLStreamException {
+    bom = BesuBenchmarkFixtures.bom(scale);
+    catalog = BesuBenchmarkFixtures.catalog(scale);
+    besuMainJar = Files.createTempFile("besu-app", ".jar");
+    try (OutputStream out = Files.newOutputStream(besuMainJar);
+        JarOutputStream jar = new JarOutputStream(out)) {
+      jar.putNextEntry(new JarEntry(BesuPluginLibrary.BESU_ARTIFACTS_CATALOG_ENTRY_NAME));
+      jar.write(catalog.getBytes(StandardCharsets.UTF_8));
+      jar.closeEntry();
+    }
+    bomDependencies = BesuBomParser.parse(new ByteArrayInputStream(bom));
+    catalogDependencies = BesuPluginLibrary.parseBesuDependencyCatalog(catalog);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(besuMainJar);
+  }
+
+  @Benchmark
+  public List<BesuProvidedDependency> parseBom() throws XMLStreamException {
+    return BesuBomParser.parse(new ByteArrayInputStream(bom));
+  }
+
+  @Benchmark
+  public String readCatalog() {
+    return BesuPluginLibrary.readBesuDependencyCatalog(besuMainJar.toFile());
+  }
+
+  @Benchmark
+  public List<BesuProvidedDependency> parseCatalog() {
+    return BesuPluginLibrary.parseBesuDependencyCatalog(catalog);
+  }
+
+  @Benchmark
+  public List<BesuProvidedDependency> mergeDependencies() {
+    return new BesuDependencyModel(
+            BesuBenchmarkFixtures.BESU_VERSION, bomDependencies, catalogDependencies)
+        .mergedDependencies();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SHA-256 content hashes of artifacts, memoized by path, size and last modified time, so that an
+ * artifact is only read again when it changed since the previous build. The artifacts are read
+ * through memory mapped regions, and the hashes can be computed from several threads.
+ */
+final class ArtifactHashes {
+  private static final long MAX_MAPPED_REGION_SIZE = 256L * 1024 * 1024;
+
+  record ArtifactHash(long size, String sha256) {}
+
+  private record Entry(long size, long lastModified, String sha256) {}
+
+  private final Map<Path, Entry> previousEntries;
+  private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+  private ArtifactHashes(final Map<Path, Entry> previousEntries) {
+    this.previousEntries = previousEntries;
+  }
+
+  /** Loads the hashes saved to the given file, an invalid or missing file is ignored. */
+  static ArtifactHashes load(final Path file) {
+    Map<Path, Entry> previousEntries = new ConcurrentHashMap<>();
+    if (Files.isRegularFile(file)) {
+      try {
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+          String[] fields = line.split(" ", 4);
+          if (fields.length == 4) {
+            previousEntries.put(
+                Path.of(fields[3]),
+                new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+          }
+        }
+      } catch (IOException | NumberFormatException e) {
+        previousEntries.clear();
+      }
+    }
+    return new ArtifactHashes(previousEntries);
+  }
+
+  /** Returns the size and the hash of the artifact, hashing it only if it changed. */
+  ArtifactHash hash(final Path artifact) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(artifact, BasicFileAttributes.class);
+      long size = attributes.size();
+      long lastModified = attributes.lastModifiedTime().toMillis();
+      Entry entry = previousEntries.get(artifact);
+      if (entry == null || entry.size() != size || entry.lastModified() != lastModified) {
+        entry = new Entry(size, lastModified, sha256(artifact));
+      }
+      entries.put(artifact, entry);
+      return new ArtifactHash(size, entry.sha256());
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to hash artifact " + artifact, e);
+    }
+  }
+
+  /** Saves the hashes of the artifacts hashed since this was loaded, and only those. */
+  void save(final Path file) {
+    List<String> lines =
+        entries.entrySet().stream()
+            .map(
+                e ->
+                    "%s %d %d %s"
+                        .formatted(
+                            e.getValue().sha256(),
+                            e.getValue().size(),
+                            e.getValue().lastModified(),
+                            e.getKey()))
+            .sorted()
+            .toList();
+    try {
+      Files.createDirectories(file.getParent());
+      Files.write(file, lines, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to save artifact hashes to file " + file, e);
+    }
+  }
+
+  static String sha256(final Path file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long position = 0; position < size; position += MAX_MAPPED_REGION_SIZE) {
+        digest.update(
+            channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                position,
+                Math.min(MAX_MAPPED_REGION_SIZE, size - position)));
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+}
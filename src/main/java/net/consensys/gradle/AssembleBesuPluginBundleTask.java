@@ -0,0 +1,350 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import groovy.json.JsonBuilder;
+import groovy.json.JsonSlurper;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Assembles the distributions of several Besu plugins in a single bundle, where the plugin only
+ * runtime artifacts that the plugins have in common are present only once.
+ *
+ * <p>The artifacts are deduplicated by coordinates, and the bundle fails when two plugins depend on
+ * different versions of the same artifact, are built against different versions of Besu, or when
+ * different artifacts have the same file name. The files that the plugins add as is to their
+ * distribution, from {@code src/dist}, are bundled too, and the bundle fails when two plugins have
+ * different files at the same path. The bundle contains a combined catalog, with the dependencies
+ * of each plugin and the shared ones.
+ */
+public abstract class AssembleBesuPluginBundleTask extends DefaultTask {
+  static final String TASK_NAME = "assembleBesuPluginBundle";
+  static final String BUNDLE_DIRECTORY_RELATIVE_PATH = "besu-plugin/bundle";
+  static final String BUNDLE_CATALOG_FILE_NAME = "besu-plugin-bundle-catalog.json";
+
+  /**
+   * The staged distribution, the artifacts catalog and the distribution contents of each plugin.
+   */
+  @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract ConfigurableFileCollection getDistributionFiles();
+
+  @Internal
+  public abstract SetProperty<ResolvedArtifactResult> getDistributionArtifacts();
+
+  @OutputDirectory
+  public abstract DirectoryProperty getBundleDirectory();
+
+  private record PluginDistribution(
+      String plugin,
+      File stagingDirectory,
+      File contentsDirectory,
+      String besuVersion,
+      List<Map<String, Object>> jars) {}
+
+  @TaskAction
+  public void assemble() {
+    List<PluginDistribution> distributions = readDistributions();
+
+    // The artifacts and their files by coordinates, and the plugins that depend on each of them
+    Map<String, Map<String, Object>> sharedArtifacts = new TreeMap<>();
+    Map<String, File> sharedFiles = new TreeMap<>();
+    Map<String, Set<String>> pluginsByArtifact = new TreeMap<>();
+    Map<String, File> pluginJars = new TreeMap<>();
+    // The bundle is a single directory, so each file name can only be used by one artifact
+    Map<String, String> fileOwners = new TreeMap<>();
+    // The files added as is to the distributions, by path in the bundle
+    Map<String, File> contentFiles = new TreeMap<>();
+    Map<String, String> contentFileOwners = new TreeMap<>();
+    Set<String> besuVersions = new TreeSet<>();
+    List<String> conflicts = new ArrayList<>();
+    for (PluginDistribution distribution : distributions) {
+      besuVersions.add(distribution.besuVersion());
+      Set<String> catalogued = new TreeSet<>();
+      for (Map<String, Object> jar : distribution.jars()) {
+        String filename = (String) jar.get("filename");
+        catalogued.add(filename);
+        String key = jar.get("group") + ":" + jar.get("name");
+        Map<String, Object> previous = sharedArtifacts.putIfAbsent(key, jar);
+        if (previous != null && !previous.get("version").equals(jar.get("version"))) {
+          conflicts.add(
+              "%s: %s in %s, %s in %s"
+                  .formatted(
+                      key,
+                      previous.get("version"),
+                      String.join(", ", pluginsByArtifact.get(key)),
+                      jar.get("version"),
+                      distribution.plugin()));
+        } else if (previous != null && !previous.get("sha256").equals(jar.get("sha256"))) {
+          // Same version, but for example shrunk differently by each plugin
+          conflicts.add(
+              "%s:%s: different content in %s and %s"
+                  .formatted(
+                      key,
+                      jar.get("version"),
+                      String.join(", ", pluginsByArtifact.get(key)),
+                      distribution.plugin()));
+        }
+        pluginsByArtifact.computeIfAbsent(key, k -> new TreeSet<>()).add(distribution.plugin());
+        sharedFiles.putIfAbsent(key, new File(distribution.stagingDirectory(), filename));
+        addFileOwner(fileOwners, filename, key, conflicts);
+      }
+      // What is not in the catalog is the plugin jar itself
+      File[] stagedFiles = distribution.stagingDirectory().listFiles();
+      if (stagedFiles != null) {
+        for (File stagedFile : stagedFiles) {
+          if (!catalogued.contains(stagedFile.getName())) {
+            pluginJars.putIfAbsent(stagedFile.getName(), stagedFile);
+            addFileOwner(
+                fileOwners, stagedFile.getName(), "plugin " + distribution.plugin(), conflicts);
+          }
+        }
+      }
+      for (Map.Entry<String, File> contentFile :
+          listContentFiles(distribution.contentsDirectory()).entrySet()) {
+        String path = contentFile.getKey();
+        File previous = contentFiles.putIfAbsent(path, contentFile.getValue());
+        if (previous == null) {
+          contentFileOwners.put(path, distribution.plugin());
+          // The same owner for all the plugins, the same file in several plugins is not a conflict
+          addFileOwner(fileOwners, path, "distribution contents", conflicts);
+        } else if (!sameContent(previous, contentFile.getValue())) {
+          conflicts.add(
+              "%s: different content in %s and %s"
+                  .formatted(path, contentFileOwners.get(path), distribution.plugin()));
+        }
+      }
+    }
+    if (besuVersions.size() > 1) {
+      conflicts.add("Besu version: plugins built against " + String.join(", ", besuVersions));
+    }
+    if (!conflicts.isEmpty()) {
+      throw new IllegalStateException(
+          "Besu plugins cannot be bundled together because of conflicts:\n  "
+              + String.join("\n  ", conflicts));
+    }
+
+    Path bundleDirectory = getBundleDirectory().get().getAsFile().toPath();
+    try {
+      clean(bundleDirectory);
+      for (Map.Entry<String, File> file : pluginJars.entrySet()) {
+        stage(file.getValue().toPath(), bundleDirectory.resolve(file.getKey()));
+      }
+      for (File file : sharedFiles.values()) {
+        stage(file.toPath(), bundleDirectory.resolve(file.getName()));
+      }
+      for (Map.Entry<String, File> file : contentFiles.entrySet()) {
+        Path stagedFile = bundleDirectory.resolve(file.getKey());
+        Files.createDirectories(stagedFile.getParent());
+        stage(file.getValue().toPath(), stagedFile);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to assemble Besu plugin bundle " + bundleDirectory, e);
+    }
+
+    writeCatalog(
+        bundleDirectory.resolve(BUNDLE_CATALOG_FILE_NAME),
+        besuVersions,
+        distributions,
+        sharedArtifacts,
+        pluginsByArtifact);
+
+    int pluginDependencies = distributions.stream().mapToInt(d -> d.jars().size()).sum();
+    getLogger()
+        .lifecycle(
+            "Bundled {} plugins with {} shared artifacts, instead of {}",
+            distributions.size(),
+            sharedArtifacts.size(),
+            pluginDependencies);
+  }
+
+  private static void addFileOwner(
+      final Map<String, String> fileOwners,
+      final String filename,
+      final String owner,
+      final List<String> conflicts) {
+    String previous = fileOwners.putIfAbsent(filename, owner);
+    if (previous != null && !previous.equals(owner)) {
+      conflicts.add("%s: file name of both %s and %s".formatted(filename, previous, owner));
+    }
+  }
+
+  /** The files of a distribution contents directory, by path relative to it. */
+  private static Map<String, File> listContentFiles(final File contentsDirectory) {
+    Map<String, File> files = new TreeMap<>();
+    if (contentsDirectory == null || !contentsDirectory.isDirectory()) {
+      return files;
+    }
+    Path root = contentsDirectory.toPath();
+    try (Stream<Path> paths = Files.walk(root)) {
+      paths
+          .filter(Files::isRegularFile)
+          .forEach(
+              path ->
+                  files.put(root.relativize(path).toString().replace('\\', '/'), path.toFile()));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to list distribution contents " + contentsDirectory, e);
+    }
+    return files;
+  }
+
+  private static boolean sameContent(final File file, final File other) {
+    try {
+      return Files.mismatch(file.toPath(), other.toPath()) == -1;
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to compare " + file + " and " + other, e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<PluginDistribution> readDistributions() {
+    Map<ComponentIdentifier, File> stagingDirectories = new TreeMap<>(componentOrder());
+    Map<ComponentIdentifier, File> catalogs = new TreeMap<>(componentOrder());
+    Map<ComponentIdentifier, File> contentsDirectories = new TreeMap<>(componentOrder());
+    for (ResolvedArtifactResult artifact : getDistributionArtifacts().get()) {
+      ComponentIdentifier owner = artifact.getVariant().getOwner();
+      // The contents directory is optional, so it is told apart by name rather than by type
+      if (artifact
+          .getFile()
+          .getName()
+          .equals(BesuPluginDistribution.DISTRIBUTION_CONTENTS_DIRECTORY_NAME)) {
+        contentsDirectories.put(owner, artifact.getFile());
+      } else if (artifact.getFile().isDirectory()) {
+        stagingDirectories.put(owner, artifact.getFile());
+      } else {
+        catalogs.put(owner, artifact.getFile());
+      }
+    }
+
+    List<PluginDistribution> distributions = new ArrayList<>();
+    stagingDirectories.forEach(
+        (owner, stagingDirectory) -> {
+          File catalogFile = catalogs.get(owner);
+          if (catalogFile == null) {
+            throw new IllegalStateException(
+                "Besu plugin " + owner.getDisplayName() + " has no artifacts catalog");
+          }
+          Map<String, Object> catalog;
+          try {
+            catalog =
+                (Map<String, Object>)
+                    new JsonSlurper()
+                        .parseText(Files.readString(catalogFile.toPath(), StandardCharsets.UTF_8));
+          } catch (IOException e) {
+            throw new RuntimeException("Unable to read plugin artifacts catalog " + catalogFile, e);
+          }
+          distributions.add(
+              new PluginDistribution(
+                  owner.getDisplayName(),
+                  stagingDirectory,
+                  contentsDirectories.get(owner),
+                  (String) catalog.get("besuVersion"),
+                  (List<Map<String, Object>>) catalog.get("dependencies")));
+        });
+    return distributions;
+  }
+
+  private static Comparator<ComponentIdentifier> componentOrder() {
+    return Comparator.comparing(ComponentIdentifier::getDisplayName);
+  }
+
+  private static void clean(final Path directory) throws IOException {
+    if (Files.exists(directory)) {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(file);
+        }
+      }
+    }
+    Files.createDirectories(directory);
+  }
+
+  private static void stage(final Path artifact, final Path stagedArtifact) throws IOException {
+    try {
+      Files.createLink(stagedArtifact, artifact);
+    } catch (IOException | UnsupportedOperationException e) {
+      Files.copy(artifact, stagedArtifact, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void writeCatalog(
+      final Path catalogFile,
+      final Set<String> besuVersions,
+      final List<PluginDistribution> distributions,
+      final Map<String, Map<String, Object>> sharedArtifacts,
+      final Map<String, Set<String>> pluginsByArtifact) {
+    List<Map<String, Object>> plugins =
+        distributions.stream()
+            .map(
+                distribution -> {
+                  // Sorted keys, like the rest of the catalog, so that it is reproducible
+                  Map<String, Object> plugin = new TreeMap<>();
+                  plugin.put("plugin", distribution.plugin());
+                  plugin.put(
+                      "dependencies",
+                      distribution.jars().stream()
+                          .map(jar -> jar.get("group") + ":" + jar.get("name"))
+                          .sorted()
+                          .toList());
+                  return plugin;
+                })
+            .toList();
+    List<Map<String, Object>> dependencies =
+        sharedArtifacts.entrySet().stream()
+            .map(
+                e -> {
+                  Map<String, Object> dependency = new TreeMap<>(e.getValue());
+                  dependency.put("plugins", List.copyOf(pluginsByArtifact.get(e.getKey())));
+                  return dependency;
+                })
+            .toList();
+
+    Map<String, Object> doc = new TreeMap<>();
+    doc.put("besuVersion", besuVersions.isEmpty() ? null : besuVersions.iterator().next());
+    doc.put("plugins", plugins);
+    doc.put("dependencies", dependencies);
+    try {
+      Files.writeString(catalogFile, new JsonBuilder(doc).toPrettyString(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write Besu plugin bundle catalog " + catalogFile, e);
+    }
+  }
+}
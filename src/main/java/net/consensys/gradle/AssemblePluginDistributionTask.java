@@ -0,0 +1,173 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Stages the plugin jar and its plugin only runtime artifacts in a directory, from which the
+ * distribution archives are built. The content hashes are memoized, so only the artifacts that
+ * changed since the last assembly are hashed again. Each artifact is staged by its own worker, so
+ * large artifacts are copied in parallel, and an artifact whose content hash did not change since
+ * the last assembly is not copied again.
+ */
+public abstract class AssemblePluginDistributionTask extends DefaultTask {
+  static final String TASK_NAME = "assemblePluginDistribution";
+  static final String STAGING_DIRECTORY_RELATIVE_PATH = "besu-plugin/distribution";
+  static final String HASHES_DIRECTORY_RELATIVE_PATH = "besu-plugin/distribution-hashes";
+  static final String ARTIFACT_HASHES_RELATIVE_PATH =
+      "besu-plugin/distribution-artifact-hashes.txt";
+
+  @InputFiles
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  public abstract ConfigurableFileCollection getArtifacts();
+
+  @OutputDirectory
+  public abstract DirectoryProperty getStagingDirectory();
+
+  /** The content hashes of the staged artifacts, as of the last assembly. */
+  @LocalState
+  public abstract DirectoryProperty getHashesDirectory();
+
+  /** The memoized hashes of the artifacts, as of the last assembly. */
+  @LocalState
+  public abstract RegularFileProperty getArtifactHashesFile();
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  @TaskAction
+  public void assemble() {
+    File stagingDirectory = getStagingDirectory().get().getAsFile();
+    File hashesDirectory = getHashesDirectory().get().getAsFile();
+
+    Map<String, File> artifactsByName = new HashMap<>();
+    for (File artifact : getArtifacts()) {
+      File previous = artifactsByName.put(artifact.getName(), artifact);
+      if (previous != null) {
+        throw new IllegalStateException(
+            "Plugin distribution artifacts %s and %s have the same name"
+                .formatted(previous, artifact));
+      }
+    }
+
+    try {
+      Files.createDirectories(stagingDirectory.toPath());
+      Files.createDirectories(hashesDirectory.toPath());
+      // Remove the artifacts that are no longer part of the distribution
+      deleteIfNotIn(stagingDirectory, artifactsByName);
+      deleteIfNotIn(hashesDirectory, artifactsByName);
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Unable to prepare plugin distribution staging directory " + stagingDirectory, e);
+    }
+
+    Path artifactHashesFile = getArtifactHashesFile().get().getAsFile().toPath();
+    ArtifactHashes artifactHashes = ArtifactHashes.load(artifactHashesFile);
+    Map<String, String> hashesByName =
+        artifactsByName.entrySet().parallelStream()
+            .collect(
+                Collectors.toMap(
+                    Map.Entry::getKey, e -> artifactHashes.hash(e.getValue().toPath()).sha256()));
+    artifactHashes.save(artifactHashesFile);
+
+    WorkQueue workQueue = getWorkerExecutor().noIsolation();
+    artifactsByName.forEach(
+        (name, artifact) ->
+            workQueue.submit(
+                StageArtifact.class,
+                parameters -> {
+                  parameters.getArtifact().set(artifact);
+                  parameters.getSha256().set(hashesByName.get(name));
+                  parameters.getStagedArtifact().set(new File(stagingDirectory, name));
+                  parameters.getHashFile().set(new File(hashesDirectory, name));
+                }));
+    workQueue.await();
+  }
+
+  private static void deleteIfNotIn(final File directory, final Map<String, File> artifactsByName)
+      throws IOException {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!artifactsByName.containsKey(file.getName())) {
+          Files.delete(file.toPath());
+        }
+      }
+    }
+  }
+
+  public interface StageArtifactParameters extends WorkParameters {
+    RegularFileProperty getArtifact();
+
+    Property<String> getSha256();
+
+    RegularFileProperty getStagedArtifact();
+
+    RegularFileProperty getHashFile();
+  }
+
+  /**
+   * Stages one artifact, by copying it, unless the staged artifact already has the same content
+   * hash. The artifacts are not hard linked: most come from the Gradle cache, that a change to the
+   * staged file would then corrupt.
+   */
+  public abstract static class StageArtifact implements WorkAction<StageArtifactParameters> {
+    @Override
+    public void execute() {
+      Path artifact = getParameters().getArtifact().get().getAsFile().toPath();
+      Path stagedArtifact = getParameters().getStagedArtifact().get().getAsFile().toPath();
+      Path hashFile = getParameters().getHashFile().get().getAsFile().toPath();
+      try {
+        String hash = getParameters().getSha256().get();
+        if (Files.exists(stagedArtifact)
+            && Files.exists(hashFile)
+            && hash.equals(Files.readString(hashFile, StandardCharsets.UTF_8))) {
+          return;
+        }
+
+        Files.copy(artifact, stagedArtifact, StandardCopyOption.REPLACE_EXISTING);
+        Files.writeString(hashFile, hash, StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to stage plugin distribution artifact " + artifact, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.process.ExecOperations;
+
+/**
+ * Measures the time it takes to load the classes of the Besu plugins and to instantiate them, with
+ * and without the dynamic CDS archive of the training launch, alternating the launches so that both
+ * see the same machine load.
+ */
+public abstract class BenchmarkPluginClassLoadingTask extends DefaultTask {
+  static final String TASK_NAME = "benchmarkPluginClassLoading";
+  static final String REPORT_RELATIVE_PATH = "reports/besu-plugin/class-loading-benchmark.txt";
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getPluginJar();
+
+  @Classpath
+  public abstract ConfigurableFileCollection getPluginOnlyRuntimeArtifacts();
+
+  @Classpath
+  public abstract ConfigurableFileCollection getBesuProvidedArtifacts();
+
+  @Nested
+  public abstract Property<JavaLauncher> getJavaLauncher();
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getPluginClassNames();
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getDynamicArchive();
+
+  /** The number of launches, with and without the archive each. */
+  @Input
+  public abstract Property<Integer> getIterations();
+
+  @OutputFile
+  public abstract RegularFileProperty getReport();
+
+  @Inject
+  protected abstract ExecOperations getExecOperations();
+
+  @TaskAction
+  public void benchmark() {
+    List<Object> classpath =
+        GeneratePluginClassListTask.trainingClasspath(
+            getPluginJar().get().getAsFile(),
+            getPluginOnlyRuntimeArtifacts(),
+            getBesuProvidedArtifacts());
+    File pluginClassNames = getPluginClassNames().get().getAsFile();
+    List<String> withArchive =
+        List.of("-XX:SharedArchiveFile=" + getDynamicArchive().get().getAsFile().getAbsolutePath());
+    List<String> withoutArchive = List.of("-Xshare:auto");
+
+    List<Long> archived = new ArrayList<>();
+    List<Long> notArchived = new ArrayList<>();
+    for (int i = 0; i < getIterations().get(); i++) {
+      notArchived.add(launch(classpath, withoutArchive, pluginClassNames));
+      archived.add(launch(classpath, withArchive, pluginClassNames));
+    }
+
+    long withoutMedian = median(notArchived);
+    long withMedian = median(archived);
+    List<String> lines = new ArrayList<>();
+    lines.add("launches without-archive-ms with-archive-ms");
+    lines.add(
+        "%d %.3f %.3f"
+            .formatted(archived.size(), withoutMedian / 1_000_000.0, withMedian / 1_000_000.0));
+    File report = getReport().get().getAsFile();
+    try {
+      Files.write(report.toPath(), lines, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write class loading benchmark report " + report, e);
+    }
+
+    getLogger()
+        .lifecycle(
+            "Besu plugin class loading: {} ms without the CDS archive, {} ms with it (median of {})",
+            "%.3f".formatted(withoutMedian / 1_000_000.0),
+            "%.3f".formatted(withMedian / 1_000_000.0),
+            archived.size());
+  }
+
+  private long launch(
+      final List<Object> classpath, final List<String> jvmArgs, final File pluginClassNames) {
+    return GeneratePluginClassListTask.launch(
+            getExecOperations(), getJavaLauncher().get(), classpath, jvmArgs, pluginClassNames)
+        .elapsedNanos();
+  }
+
+  private static long median(final List<Long> values) {
+    List<Long> sorted = values.stream().sorted().toList();
+    return sorted.get(sorted.size() / 2);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+
+/**
+ * Streaming parser of the Besu BOM, that reads the {@code dependencyManagement/dependencies}
+ * section in a single forward pass. Only the direct children of each managed {@code dependency} are
+ * read, so {@code dependency} elements elsewhere in the POM, and the coordinates nested in {@code
+ * exclusions}, are ignored. Imported BOMs, with type {@code pom}, are skipped.
+ */
+final class BesuBomParser {
+  private static final List<String> DEPENDENCY_PATH =
+      List.of("project", "dependencyManagement", "dependencies", "dependency");
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+  private BesuBomParser() {}
+
+  static List<BesuProvidedDependency> parse(final File besuBom) {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(besuBom.toPath()))) {
+      return parse(in);
+    } catch (IOException | XMLStreamException e) {
+      throw new RuntimeException("Unable to parse Besu BOM " + besuBom, e);
+    }
+  }
+
+  static List<BesuProvidedDependency> parse(final InputStream in) throws XMLStreamException {
+    List<BesuProvidedDependency> bomDependencies = new ArrayList<>();
+    List<String> path = new ArrayList<>();
+    XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+    try {
+      String groupId = null;
+      String artifactId = null;
+      String version = null;
+      String classifier = null;
+      String type = null;
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT -> {
+            String name = reader.getLocalName();
+            if (path.equals(DEPENDENCY_PATH)) {
+              // getElementText consumes the matching end element, so the path is unchanged
+              switch (name) {
+                case "groupId" -> groupId = reader.getElementText().trim();
+                case "artifactId" -> artifactId = reader.getElementText().trim();
+                case "version" -> version = reader.getElementText().trim();
+                case "classifier" -> classifier = reader.getElementText().trim();
+                case "type" -> type = reader.getElementText().trim();
+                default -> path.add(name);
+              }
+            } else {
+              path.add(name);
+            }
+          }
+          case XMLStreamConstants.END_ELEMENT -> {
+            if (path.equals(DEPENDENCY_PATH)) {
+              if (!"pom".equals(type)) {
+                bomDependencies.add(
+                    new BesuProvidedDependency(groupId, artifactId, version, classifier, null));
+              }
+              groupId = null;
+              artifactId = null;
+              version = null;
+              classifier = null;
+              type = null;
+            }
+            path.removeLast();
+          }
+          default -> {}
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return bomDependencies;
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+}
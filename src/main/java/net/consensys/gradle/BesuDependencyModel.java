@@ -0,0 +1,325 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+
+/**
+ * The dependencies provided by a given Besu version, as read from its BOM and its artifacts
+ * catalog. The model is immutable and does not reference any Gradle project, so it can be shared
+ * and persisted across builds.
+ */
+final class BesuDependencyModel {
+  private static final int MAGIC = 0x42455355;
+  static final int FORMAT_VERSION = 1;
+  private static final int CHECKSUM_LENGTH = 32;
+
+  private final String besuVersion;
+  private final List<BesuProvidedDependency> bomDependencies;
+  private final List<BesuProvidedDependency> catalogDependencies;
+  private final List<BesuProvidedDependency> mergedDependencies;
+  private final Map<String, String> managedVersionsByCoordinates;
+  private final BesuProvidedDependencyIndex catalogIndex;
+
+  BesuDependencyModel(
+      final String besuVersion,
+      final List<BesuProvidedDependency> bomDependencies,
+      final List<BesuProvidedDependency> catalogDependencies) {
+    this.besuVersion = besuVersion;
+    this.bomDependencies = List.copyOf(bomDependencies);
+    this.catalogDependencies = List.copyOf(catalogDependencies);
+
+    // Merge BOM and catalog in a single pass, collecting the managed versions along the way.
+    // The BOM wins over the catalog when both declare the same coordinates.
+    int expectedSize = this.bomDependencies.size() + this.catalogDependencies.size();
+    List<BesuProvidedDependency> mergedDependencies = new ArrayList<>(expectedSize);
+    Map<String, String> managedVersionsByCoordinates = HashMap.newHashMap(expectedSize);
+    Set<String> bomCoordinates = HashSet.newHashSet(this.bomDependencies.size());
+    for (BesuProvidedDependency dependency : this.bomDependencies) {
+      String coordinates = dependency.coordinates();
+      bomCoordinates.add(coordinates);
+      mergedDependencies.add(dependency);
+      putManagedVersion(managedVersionsByCoordinates, coordinates, dependency);
+    }
+    for (BesuProvidedDependency dependency : this.catalogDependencies) {
+      String coordinates = dependency.coordinates();
+      if (!bomCoordinates.contains(coordinates)) {
+        mergedDependencies.add(dependency);
+        putManagedVersion(managedVersionsByCoordinates, coordinates, dependency);
+      }
+    }
+    this.mergedDependencies = List.copyOf(mergedDependencies);
+    this.managedVersionsByCoordinates = Map.copyOf(managedVersionsByCoordinates);
+    this.catalogIndex = new BesuProvidedDependencyIndex(this.catalogDependencies);
+  }
+
+  String besuVersion() {
+    return besuVersion;
+  }
+
+  List<BesuProvidedDependency> bomDependencies() {
+    return bomDependencies;
+  }
+
+  List<BesuProvidedDependency> catalogDependencies() {
+    return catalogDependencies;
+  }
+
+  /** Index of the catalog dependencies, that are the jars shipped in the Besu distribution. */
+  BesuProvidedDependencyIndex catalogIndex() {
+    return catalogIndex;
+  }
+
+  /** The BOM dependencies, followed by the catalog dependencies that are not in the BOM. */
+  List<BesuProvidedDependency> mergedDependencies() {
+    return mergedDependencies;
+  }
+
+  /** The version Besu uses for each merged dependency, keyed by {@code group:name}. */
+  Map<String, String> managedVersionsByCoordinates() {
+    return managedVersionsByCoordinates;
+  }
+
+  /** Models are equal when resolved from the same BOM and catalog dependencies. */
+  @Override
+  public boolean equals(final Object o) {
+    return o instanceof BesuDependencyModel other
+        && besuVersion.equals(other.besuVersion)
+        && bomDependencies.equals(other.bomDependencies)
+        && catalogDependencies.equals(other.catalogDependencies);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(besuVersion, bomDependencies, catalogDependencies);
+  }
+
+  /**
+   * Writes the model to the given file, with a header identifying the Besu version and repository
+   * it was resolved from, and followed by the SHA-256 checksum of the content.
+   */
+  void writeFile(final Path file, final String besuRepo) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buffer);
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeUTF(besuVersion);
+    out.writeUTF(besuRepo);
+    writeTo(out);
+    out.flush();
+    out.write(sha256(buffer.toByteArray()));
+    out.flush();
+    Files.write(file, buffer.toByteArray());
+  }
+
+  /**
+   * Reads a model previously written with {@link #writeFile}, returns null if the file does not
+   * exist, has an invalid checksum, or was written for another Besu version, Besu repository or
+   * format version.
+   */
+  static BesuDependencyModel readFile(
+      final Path file, final String besuVersion, final String besuRepo) throws IOException {
+    return readFile(file, besuVersion, besuRepo, true);
+  }
+
+  /**
+   * Reads a model previously written with {@link #writeFile}, whatever its Besu version and
+   * repository, returns null if the file does not exist, has an invalid checksum or was written
+   * with another format version.
+   */
+  static BesuDependencyModel readFile(final Path file) throws IOException {
+    return readFile(file, null, null, false);
+  }
+
+  private static BesuDependencyModel readFile(
+      final Path file, final String besuVersion, final String besuRepo, final boolean checkKey)
+      throws IOException {
+    byte[] content;
+    try {
+      content = Files.readAllBytes(file);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    if (content.length <= CHECKSUM_LENGTH) {
+      return null;
+    }
+    int payloadLength = content.length - CHECKSUM_LENGTH;
+    byte[] checksum = sha256(Arrays.copyOf(content, payloadLength));
+    if (!Arrays.equals(checksum, 0, CHECKSUM_LENGTH, content, payloadLength, content.length)) {
+      return null;
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, 0, payloadLength));
+    if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+      return null;
+    }
+    String fileBesuVersion = in.readUTF();
+    String fileBesuRepo = in.readUTF();
+    if (checkKey && (!besuVersion.equals(fileBesuVersion) || !besuRepo.equals(fileBesuRepo))) {
+      return null;
+    }
+    return readFrom(in);
+  }
+
+  /** The model in its compact binary form, without header nor checksum. */
+  byte[] toBytes() {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(buffer)) {
+      writeTo(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return buffer.toByteArray();
+  }
+
+  /** Reads a model previously encoded with {@link #toBytes}. */
+  static BesuDependencyModel fromBytes(final byte[] bytes) {
+    try {
+      return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] sha256(final byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes the model in a compact binary form: a table of the distinct strings, followed by the
+   * dependencies encoded as indexes into that table.
+   */
+  private void writeTo(final DataOutputStream out) throws IOException {
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    intern(strings, besuVersion);
+    for (BesuProvidedDependency dependency : bomDependencies) {
+      internAll(strings, dependency);
+    }
+    for (BesuProvidedDependency dependency : catalogDependencies) {
+      internAll(strings, dependency);
+    }
+
+    out.writeInt(strings.size());
+    for (String string : strings.keySet()) {
+      out.writeUTF(string);
+    }
+    out.writeInt(strings.get(besuVersion));
+    writeDependencies(out, strings, bomDependencies);
+    writeDependencies(out, strings, catalogDependencies);
+  }
+
+  private static BesuDependencyModel readFrom(final DataInputStream in) throws IOException {
+    String[] strings = new String[in.readInt()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = in.readUTF();
+    }
+    String besuVersion = strings[in.readInt()];
+    List<BesuProvidedDependency> bomDependencies = readDependencies(in, strings);
+    List<BesuProvidedDependency> catalogDependencies = readDependencies(in, strings);
+    return new BesuDependencyModel(besuVersion, bomDependencies, catalogDependencies);
+  }
+
+  private static void putManagedVersion(
+      final Map<String, String> managedVersionsByCoordinates,
+      final String coordinates,
+      final BesuProvidedDependency dependency) {
+    if (dependency.version() != null && !dependency.version().isBlank()) {
+      managedVersionsByCoordinates.put(coordinates, dependency.version());
+    }
+  }
+
+  private static void internAll(
+      final Map<String, Integer> strings, final BesuProvidedDependency dependency) {
+    intern(strings, dependency.group());
+    intern(strings, dependency.name());
+    intern(strings, dependency.version());
+    intern(strings, dependency.classifier());
+    intern(strings, dependency.filename());
+  }
+
+  private static void intern(final Map<String, Integer> strings, final String string) {
+    if (string != null) {
+      strings.putIfAbsent(string, strings.size());
+    }
+  }
+
+  private static void writeDependencies(
+      final DataOutputStream out,
+      final Map<String, Integer> strings,
+      final List<BesuProvidedDependency> dependencies)
+      throws IOException {
+    out.writeInt(dependencies.size());
+    for (BesuProvidedDependency dependency : dependencies) {
+      writeString(out, strings, dependency.group());
+      writeString(out, strings, dependency.name());
+      writeString(out, strings, dependency.version());
+      writeString(out, strings, dependency.classifier());
+      writeString(out, strings, dependency.filename());
+    }
+  }
+
+  private static void writeString(
+      final DataOutputStream out, final Map<String, Integer> strings, final String string)
+      throws IOException {
+    out.writeInt(string == null ? -1 : strings.get(string));
+  }
+
+  private static List<BesuProvidedDependency> readDependencies(
+      final DataInputStream in, final String[] strings) throws IOException {
+    int size = in.readInt();
+    List<BesuProvidedDependency> dependencies = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      dependencies.add(
+          new BesuProvidedDependency(
+              readString(in, strings),
+              readString(in, strings),
+              readString(in, strings),
+              readString(in, strings),
+              readString(in, strings)));
+    }
+    return dependencies;
+  }
+
+  private static String readString(final DataInputStream in, final String[] strings)
+      throws IOException {
+    int index = in.readInt();
+    return index < 0 ? null : strings[index];
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+/**
+ * Persistent cache of {@link BesuDependencyModel}s under the Gradle user home, keyed by Besu
+ * version and Besu repository URL.
+ *
+ * <p>Each entry is the serialized model followed by its SHA-256 checksum, entries that are
+ * truncated, corrupted or written by a different format version are treated as a miss and
+ * rewritten. Snapshot versions are never cached since their content can change.
+ */
+final class BesuDependencyModelCache {
+  private static final Logger LOG = Logging.getLogger(BesuDependencyModelCache.class);
+
+  private final Path cacheDirectory;
+  private final boolean refresh;
+
+  BesuDependencyModelCache(final File gradleUserHomeDir, final boolean refresh) {
+    this.cacheDirectory =
+        gradleUserHomeDir
+            .toPath()
+            .resolve("caches/besu-plugin/model-v" + BesuDependencyModel.FORMAT_VERSION);
+    this.refresh = refresh;
+  }
+
+  BesuDependencyModel getOrResolve(
+      final String besuVersion,
+      final String besuRepo,
+      final Supplier<BesuDependencyModel> resolver) {
+    if (besuVersion.endsWith("-SNAPSHOT")) {
+      return resolver.get();
+    }
+
+    Path cacheFile = cacheFile(besuVersion, besuRepo);
+    if (!refresh) {
+      BesuDependencyModel cached = load(cacheFile, besuVersion, besuRepo);
+      if (cached != null) {
+        LOG.lifecycle("Besu dependency model cache hit for {} from {}", besuVersion, besuRepo);
+        return cached;
+      }
+    }
+
+    LOG.lifecycle("Besu dependency model cache miss for {} from {}", besuVersion, besuRepo);
+    BesuDependencyModel model = resolver.get();
+    store(cacheFile, besuRepo, model);
+    return model;
+  }
+
+  private Path cacheFile(final String besuVersion, final String besuRepo) {
+    String repoHash;
+    try {
+      repoHash =
+          HexFormat.of()
+              .formatHex(
+                  MessageDigest.getInstance("SHA-256")
+                      .digest(besuRepo.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    return cacheDirectory.resolve(
+        besuVersion.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + repoHash.substring(0, 16) + ".bin");
+  }
+
+  private BesuDependencyModel load(
+      final Path cacheFile, final String besuVersion, final String besuRepo) {
+    try {
+      BesuDependencyModel model = BesuDependencyModel.readFile(cacheFile, besuVersion, besuRepo);
+      if (model == null && Files.exists(cacheFile)) {
+        LOG.info("Ignoring invalid Besu dependency model cache entry {}", cacheFile);
+      }
+      return model;
+    } catch (IOException e) {
+      LOG.info("Ignoring unreadable Besu dependency model cache entry {}", cacheFile, e);
+      return null;
+    }
+  }
+
+  private void store(final Path cacheFile, final String besuRepo, final BesuDependencyModel model) {
+    try {
+      // Write to a temporary file first, so concurrent builds never read a partial entry
+      Files.createDirectories(cacheDirectory);
+      Path tmpFile = Files.createTempFile(cacheDirectory, cacheFile.getFileName().toString(), null);
+      model.writeFile(tmpFile, besuRepo);
+      Files.move(
+          tmpFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOG.warn("Unable to write Besu dependency model cache entry {}", cacheFile, e);
+    }
+  }
+}
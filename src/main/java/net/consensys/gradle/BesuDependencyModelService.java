@@ -0,0 +1,89 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.gradle.api.Project;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Build scoped holder of the {@link BesuDependencyModel}s, so that the Besu BOM and catalog are
+ * resolved and parsed only once per build, whatever the number of projects applying the plugin.
+ * Projects pinned to different Besu versions, or to different Besu repositories, get their own
+ * entry.
+ */
+public abstract class BesuDependencyModelService
+    implements BuildService<BesuDependencyModelService.Params> {
+  static final String SERVICE_NAME = "besuDependencyModel";
+
+  public interface Params extends BuildServiceParameters {
+    DirectoryProperty getGradleUserHome();
+
+    Property<Boolean> getRefreshDependencies();
+  }
+
+  static Provider<BesuDependencyModelService> register(final Project project) {
+    return project
+        .getGradle()
+        .getSharedServices()
+        .registerIfAbsent(
+            SERVICE_NAME,
+            BesuDependencyModelService.class,
+            spec -> {
+              spec.getParameters()
+                  .getGradleUserHome()
+                  .set(project.getGradle().getGradleUserHomeDir());
+              spec.getParameters()
+                  .getRefreshDependencies()
+                  .set(project.getGradle().getStartParameter().isRefreshDependencies());
+            });
+  }
+
+  private final Map<String, BesuDependencyModel> models = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the model for the given Besu version and repository, using the resolver only if the
+   * model is neither already loaded in this build nor present in the persistent cache.
+   */
+  BesuDependencyModel getModel(
+      final String besuVersion,
+      final String besuRepo,
+      final Supplier<BesuDependencyModel> resolver) {
+    return models.computeIfAbsent(
+        besuVersion + "@" + besuRepo,
+        key ->
+            new BesuDependencyModelCache(
+                    getParameters().getGradleUserHome().get().getAsFile(),
+                    getParameters().getRefreshDependencies().get())
+                .getOrResolve(besuVersion, besuRepo, resolver));
+  }
+
+  /**
+   * Returns the model for the given Besu version and repository, using the source only if the model
+   * is not already loaded in this build. The source is responsible for the persistent cache, like
+   * {@link BesuDependencyModelSource} at configuration time.
+   */
+  BesuDependencyModel loadModel(
+      final String besuVersion, final String besuRepo, final Supplier<BesuDependencyModel> source) {
+    return models.computeIfAbsent(besuVersion + "@" + besuRepo, key -> source.get());
+  }
+}
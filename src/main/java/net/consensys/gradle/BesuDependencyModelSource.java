@@ -0,0 +1,165 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+/**
+ * Loads the {@link BesuDependencyModel} when it is needed at configuration time: from the
+ * persistent cache, else from the model file of the resolve task, else by parsing the Besu BOM and
+ * catalog.
+ *
+ * <p>The files read here are not inputs of the configuration cache, the model itself is, so that
+ * creating the persistent cache entry or the model file does not invalidate the configuration cache
+ * of the next build.
+ */
+public abstract class BesuDependencyModelSource
+    implements ValueSource<
+        BesuDependencyModelSource.LoadedModel, BesuDependencyModelSource.Params> {
+
+  public interface Params extends ValueSourceParameters {
+    Property<String> getBesuVersion();
+
+    Property<String> getBesuRepo();
+
+    DirectoryProperty getGradleUserHome();
+
+    Property<Boolean> getRefreshDependencies();
+
+    RegularFileProperty getBesuDependencyModelFile();
+
+    ConfigurableFileCollection getBesuBomAndCatalog();
+
+    ConfigurableFileCollection getBesuBomAndMainJar();
+  }
+
+  /**
+   * The model, with the metrics of its parsing, if it had to be parsed, for the metrics service
+   * that cannot be used from a value source. Only the model is part of the equality, so that the
+   * value is the same whether the model was parsed or read from the cache.
+   */
+  static final class LoadedModel implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final transient BesuDependencyModel model;
+    private final transient RecordedMetrics metrics;
+
+    LoadedModel(final BesuDependencyModel model, final RecordedMetrics metrics) {
+      this.model = model;
+      this.metrics = metrics;
+    }
+
+    BesuDependencyModel model() {
+      return model;
+    }
+
+    RecordedMetrics metrics() {
+      return metrics;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof LoadedModel other && model.equals(other.model);
+    }
+
+    @Override
+    public int hashCode() {
+      return model.hashCode();
+    }
+
+    /** Stored in the configuration cache in the compact form of the model, without metrics. */
+    private Object writeReplace() {
+      return new SerializedModel(model.toBytes());
+    }
+  }
+
+  private static final class SerializedModel implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] model;
+
+    SerializedModel(final byte[] model) {
+      this.model = model;
+    }
+
+    private Object readResolve() {
+      return new LoadedModel(BesuDependencyModel.fromBytes(model), new RecordedMetrics());
+    }
+  }
+
+  /** Metrics recorded in a value source, to be added later to the metrics service. */
+  static final class RecordedMetrics implements BesuPluginMetrics {
+    private final List<Consumer<BesuPluginMetrics>> records = new ArrayList<>();
+
+    @Override
+    public void addDuration(final String phase, final long nanos) {
+      records.add(metrics -> metrics.addDuration(phase, nanos));
+    }
+
+    @Override
+    public void count(final String phase, final String counter, final long amount) {
+      records.add(metrics -> metrics.count(phase, counter, amount));
+    }
+
+    void addTo(final BesuPluginMetrics metrics) {
+      records.forEach(record -> record.accept(metrics));
+    }
+  }
+
+  @Override
+  public LoadedModel obtain() {
+    Params parameters = getParameters();
+    RecordedMetrics metrics = new RecordedMetrics();
+    String besuVersion = parameters.getBesuVersion().get();
+    String besuRepo = parameters.getBesuRepo().get();
+    BesuDependencyModel model =
+        new BesuDependencyModelCache(
+                parameters.getGradleUserHome().get().getAsFile(),
+                parameters.getRefreshDependencies().get())
+            .getOrResolve(
+                besuVersion,
+                besuRepo,
+                () -> {
+                  // Prefer the model file written by, or restored from the build cache for, the
+                  // resolve task, over resolving the BOM and catalog again, unless the snapshot
+                  // it was written from may have changed, or dependencies are refreshed
+                  BesuDependencyModel modelFromFile =
+                      besuVersion.endsWith("-SNAPSHOT") || parameters.getRefreshDependencies().get()
+                          ? null
+                          : BesuPluginLibrary.readBesuDependencyModel(
+                              parameters.getBesuDependencyModelFile().get().getAsFile(),
+                              besuVersion,
+                              besuRepo);
+                  return modelFromFile != null
+                      ? modelFromFile
+                      : BesuPluginLibrary.parseBesuDependencyModel(
+                          metrics,
+                          besuVersion,
+                          parameters.getBesuBomAndCatalog(),
+                          parameters.getBesuBomAndMainJar());
+                });
+    return new LoadedModel(model, metrics);
+  }
+}
@@ -20,9 +20,12 @@ import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class BesuOld2NewCoordinatesMapping {
   static final Map<String, String> OLD_2_NEW_COORDINATES_MAP;
+  private static final Set<String> OLD_COORDINATES_GROUPS;
 
   static {
     final var map = new HashMap<String, String>();
@@ -42,6 +45,10 @@ public class BesuOld2NewCoordinatesMapping {
                 }
               });
       OLD_2_NEW_COORDINATES_MAP = Collections.unmodifiableMap(map);
+      OLD_COORDINATES_GROUPS =
+          map.keySet().stream()
+              .map(coordinate -> coordinate.substring(0, coordinate.indexOf(':')))
+              .collect(Collectors.toUnmodifiableSet());
     } catch (IOException e) {
       throw new ExceptionInInitializerError(e);
     }
@@ -50,4 +57,20 @@ public class BesuOld2NewCoordinatesMapping {
   static Map<String, String> getOld2NewCoordinates() {
     return OLD_2_NEW_COORDINATES_MAP;
   }
+
+  /**
+   * Returns the new coordinates for the given old ones, or null if they are not old Besu
+   * coordinates. Groups that never had old coordinates are skipped without building the {@code
+   * group:name} key.
+   */
+  static String getNewCoordinates(final String group, final String name) {
+    if (!OLD_COORDINATES_GROUPS.contains(group)) {
+      return null;
+    }
+    return OLD_2_NEW_COORDINATES_MAP.get(group + ":" + name);
+  }
+
+  static boolean isOldCoordinate(final String group, final String name) {
+    return getNewCoordinates(group, name) != null;
+  }
 }
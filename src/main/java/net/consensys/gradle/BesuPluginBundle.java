@@ -0,0 +1,94 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import org.gradle.api.NamedDomainObjectProvider;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ArtifactView;
+import org.gradle.api.artifacts.DependencyScopeConfiguration;
+import org.gradle.api.artifacts.ResolvableConfiguration;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.plugins.BasePlugin;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.bundling.Zip;
+
+/**
+ * Bundles the distributions of the Besu plugins declared in the {@code besuPlugins} configuration,
+ * usually from the root project of a multi plugin build, sharing their common runtime artifacts.
+ */
+public abstract class BesuPluginBundle implements Plugin<Project> {
+  static final String BESU_PLUGINS_CONFIGURATION_NAME = "besuPlugins";
+  static final String BUNDLE_ZIP_TASK_NAME = "besuPluginBundleZip";
+
+  @Override
+  public void apply(final Project project) {
+    project.getPluginManager().apply(BasePlugin.class);
+
+    NamedDomainObjectProvider<DependencyScopeConfiguration> besuPlugins =
+        project.getConfigurations().dependencyScope(BESU_PLUGINS_CONFIGURATION_NAME);
+    NamedDomainObjectProvider<ResolvableConfiguration> besuPluginDistributions =
+        project
+            .getConfigurations()
+            .resolvable(
+                BESU_PLUGINS_CONFIGURATION_NAME + "Distributions",
+                configuration -> {
+                  configuration.extendsFrom(besuPlugins.get());
+                  configuration
+                      .getAttributes()
+                      .attribute(
+                          Category.CATEGORY_ATTRIBUTE,
+                          project
+                              .getObjects()
+                              .named(Category.class, BesuPluginDistribution.DISTRIBUTION_CATEGORY));
+                });
+    ArtifactView distributionView =
+        besuPluginDistributions.get().getIncoming().artifactView(view -> {});
+
+    TaskProvider<AssembleBesuPluginBundleTask> assembleTask =
+        project
+            .getTasks()
+            .register(
+                AssembleBesuPluginBundleTask.TASK_NAME,
+                AssembleBesuPluginBundleTask.class,
+                task -> {
+                  task.setGroup("Distribution");
+                  task.setDescription(
+                      "Assembles the Besu plugins in a single bundle, sharing their common"
+                          + " runtime artifacts.");
+                  task.getDistributionFiles().from(distributionView.getFiles());
+                  task.getDistributionArtifacts()
+                      .set(distributionView.getArtifacts().getResolvedArtifacts());
+                  task.getBundleDirectory()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .dir(AssembleBesuPluginBundleTask.BUNDLE_DIRECTORY_RELATIVE_PATH));
+                });
+
+    project
+        .getTasks()
+        .register(
+            BUNDLE_ZIP_TASK_NAME,
+            Zip.class,
+            zip -> {
+              zip.setGroup("Distribution");
+              zip.setDescription("Bundles the Besu plugins in a single zip archive.");
+              zip.getArchiveClassifier().set("besu-plugins");
+              zip.from(assembleTask);
+            });
+  }
+}
@@ -14,54 +14,465 @@
  */
 package net.consensys.gradle;
 
+import static net.consensys.gradle.CollectPluginOnlyRuntimeArtifactsTask.BINARY_PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH;
 import static net.consensys.gradle.CollectPluginOnlyRuntimeArtifactsTask.PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH;
+import static net.consensys.gradle.CollectPluginOnlyRuntimeArtifactsTask.PLUGIN_ONLY_RUNTIME_ARTIFACTS_RELATIVE_PATH;
 
 import java.io.File;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
 
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
-import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.ArtifactView;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.attributes.Category;
 import org.gradle.api.distribution.DistributionContainer;
 import org.gradle.api.distribution.plugins.DistributionPlugin;
 import org.gradle.api.file.CopySpec;
+import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.plugins.internal.JavaPluginHelper;
 import org.gradle.api.plugins.jvm.internal.JvmFeatureInternal;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.bundling.AbstractArchiveTask;
+import org.gradle.api.tasks.bundling.Compression;
+import org.gradle.api.tasks.bundling.Tar;
+import org.gradle.api.tasks.bundling.Zip;
+import org.gradle.api.tasks.bundling.ZipEntryCompression;
 import org.gradle.jvm.tasks.Jar;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.jvm.toolchain.JavaToolchainService;
 
 public abstract class BesuPluginDistribution implements Plugin<Project> {
+  static final String DISTRIBUTION_ELEMENTS_CONFIGURATION_NAME = "besuPluginDistributionElements";
+  static final String DISTRIBUTION_CATEGORY = "besu-plugin-distribution";
+
+  /** The directory of the files added as is to the distribution, under src. */
+  static final String DISTRIBUTION_CONTENTS_DIRECTORY_NAME = "dist";
+
+  private static final Set<String> DISTRIBUTION_ARCHIVE_TASK_NAMES = Set.of("distZip", "distTar");
 
   @Override
   public void apply(final Project project) {
     project.getPluginManager().apply(BesuPluginLibrary.class);
     project.getPluginManager().apply(DistributionPlugin.class);
 
-    // Register the task and ensure it runs after Besu dependency resolution.
-    project
-        .getTasks()
-        .register(
-            CollectPluginOnlyRuntimeArtifactsTask.TASK_NAME,
-            CollectPluginOnlyRuntimeArtifactsTask.class,
-            task -> {
-              task.getRuntimeArtifacts()
-                  .from(project.getConfigurations().getByName("runtimeClasspath"));
-              task.dependsOn(BesuPluginLibrary.RESOLVE_BESU_DEPS_TASK_NAME);
-            });
+    Configuration runtimeClasspath = project.getConfigurations().getByName("runtimeClasspath");
+    Provider<BesuDependencyModel> besuDependencyModel =
+        project.getPlugins().getPlugin(BesuPluginLibrary.class).getBesuDependencyModel();
+    Provider<BesuPluginMetricsService> metrics = BesuPluginMetricsService.register(project);
+    BesuPluginLibraryExtension extension =
+        project.getExtensions().getByType(BesuPluginLibraryExtension.class);
+
+    // Only the artifacts of the components that Besu does not provide are resolved
+    ArtifactView pluginOnlyRuntimeArtifactView =
+        runtimeClasspath
+            .getIncoming()
+            .artifactView(
+                view ->
+                    view.componentFilter(
+                        component -> {
+                          long start = System.nanoTime();
+                          boolean pluginOnly =
+                              CollectPluginOnlyRuntimeArtifactsTask.isPluginOnly(
+                                  besuDependencyModel.get().catalogIndex(), component);
+                          metrics
+                              .get()
+                              .count(
+                                  BesuPluginMetricsService.COMPONENT_SELECTION,
+                                  pluginOnly ? "selected" : "rejected",
+                                  1);
+                          metrics
+                              .get()
+                              .recordDuration(BesuPluginMetricsService.COMPONENT_SELECTION, start);
+                          return pluginOnly;
+                        }));
+    // The artifacts of the components that Besu provides, all on the compile classpath
+    ArtifactView besuProvidedArtifactView =
+        project
+            .getConfigurations()
+            .getByName("compileClasspath")
+            .getIncoming()
+            .artifactView(
+                view ->
+                    view.componentFilter(
+                        component ->
+                            !CollectPluginOnlyRuntimeArtifactsTask.isPluginOnly(
+                                besuDependencyModel.get().catalogIndex(), component)));
+
+    JvmFeatureInternal mainFeature = JavaPluginHelper.getJavaComponent(project).getMainFeature();
+
+    TaskProvider<ShrinkPluginOnlyArtifactsTask> shrinkTask =
+        project
+            .getTasks()
+            .register(
+                ShrinkPluginOnlyArtifactsTask.TASK_NAME,
+                ShrinkPluginOnlyArtifactsTask.class,
+                task -> {
+                  task.setGroup("Distribution");
+                  task.setDescription(
+                      "Removes the classes unreachable from the plugins from the plugin only"
+                          + " runtime artifacts.");
+                  task.getMetricsService().set(metrics);
+                  task.usesService(metrics);
+                  task.getPluginClasses().from(mainFeature.getSourceSet().getOutput());
+                  task.getPluginOnlyRuntimeArtifacts()
+                      .from(pluginOnlyRuntimeArtifactView.getFiles());
+                  task.getKeepRules().set(extension.getShrinkKeepRules());
+                  task.getShrunkArtifactsDirectory()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .dir(
+                                  ShrinkPluginOnlyArtifactsTask
+                                      .SHRUNK_ARTIFACTS_DIRECTORY_RELATIVE_PATH));
+                  task.getShrunkArtifactsList()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(
+                                  ShrinkPluginOnlyArtifactsTask
+                                      .SHRUNK_ARTIFACTS_LIST_RELATIVE_PATH));
+                  task.getReportFile()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(ShrinkPluginOnlyArtifactsTask.REPORT_RELATIVE_PATH));
+                });
+    // Shrinking is opt-in, when enabled the shrunk artifacts replace the original ones
+    Provider<List<File>> shrunkRuntimeArtifacts =
+        extension
+            .getShrinkPluginOnlyArtifacts()
+            .flatMap(
+                shrink ->
+                    shrink
+                        ? shrinkTask
+                            .flatMap(ShrinkPluginOnlyArtifactsTask::getShrunkArtifactsList)
+                            .map(
+                                listFile ->
+                                    CollectPluginOnlyRuntimeArtifactsTask
+                                        .readPluginOnlyRuntimeArtifactsList(listFile.getAsFile()))
+                        : project.getProviders().provider(List::<File>of));
+
+    TaskProvider<CollectPluginOnlyRuntimeArtifactsTask> collectTask =
+        project
+            .getTasks()
+            .register(
+                CollectPluginOnlyRuntimeArtifactsTask.TASK_NAME,
+                CollectPluginOnlyRuntimeArtifactsTask.class,
+                task -> {
+                  task.getMetricsService().set(metrics);
+                  task.usesService(metrics);
+                  task.getRuntimeArtifacts().from(pluginOnlyRuntimeArtifactView.getFiles());
+                  task.getShrunkRuntimeArtifacts().from(shrunkRuntimeArtifacts);
+                  task.getBesuDependencyModelFile()
+                      .set(
+                          project
+                              .getTasks()
+                              .named(
+                                  BesuPluginLibrary.RESOLVE_BESU_DEPS_TASK_NAME,
+                                  ResolveBesuProvidedDependenciesTask.class)
+                              .flatMap(
+                                  ResolveBesuProvidedDependenciesTask::getBesuDependencyModelFile));
+                  task.getRuntimeClasspathRootComponent()
+                      .set(runtimeClasspath.getIncoming().getResolutionResult().getRootComponent());
+                  Provider<Set<ResolvedArtifactResult>> resolvedArtifacts =
+                      pluginOnlyRuntimeArtifactView.getArtifacts().getResolvedArtifacts();
+                  task.getPluginOnlyRuntimeArtifactIdentifiers()
+                      .set(
+                          resolvedArtifacts.map(
+                              artifacts ->
+                                  artifacts.stream().map(ResolvedArtifactResult::getId).toList()));
+                  task.getPluginOnlyRuntimeArtifactFiles()
+                      .set(
+                          resolvedArtifacts.map(
+                              artifacts ->
+                                  artifacts.stream()
+                                      .map(ResolvedArtifactResult::getFile)
+                                      .toList()));
+                  task.getBesuVersion()
+                      .set(
+                          extension
+                              .getBesuVersion()
+                              .orElse(project.getProviders().gradleProperty("besuVersion")));
+                  task.getArtifactsCatalog()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH));
+                  task.getBinaryArtifactsCatalog()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(BINARY_PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH)
+                              .filter(file -> extension.getBinaryArtifactsCatalog().get()));
+                  task.getArtifactHashesFile()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(
+                                  CollectPluginOnlyRuntimeArtifactsTask
+                                      .ARTIFACT_HASHES_RELATIVE_PATH));
+                  task.getPluginOnlyRuntimeArtifactsList()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(PLUGIN_ONLY_RUNTIME_ARTIFACTS_RELATIVE_PATH));
+                });
+
+    // Only the plugin only runtime artifacts are distributed, the rest is provided by Besu
+    Provider<List<File>> pluginOnlyRuntimeArtifacts =
+        collectTask
+            .flatMap(CollectPluginOnlyRuntimeArtifactsTask::getPluginOnlyRuntimeArtifactsList)
+            .map(
+                listFile ->
+                    CollectPluginOnlyRuntimeArtifactsTask.readPluginOnlyRuntimeArtifactsList(
+                        listFile.getAsFile()));
+
+    TaskProvider<IndexPluginPackagesTask> indexPackagesTask =
+        project
+            .getTasks()
+            .register(
+                IndexPluginPackagesTask.TASK_NAME,
+                IndexPluginPackagesTask.class,
+                task -> {
+                  task.setGroup("Build");
+                  task.setDescription(
+                      "Indexes the packages of the plugin distribution jars, and reports split"
+                          + " packages.");
+                  task.getMetricsService().set(metrics);
+                  task.usesService(metrics);
+                  task.getPluginClasses().from(mainFeature.getSourceSet().getOutput());
+                  task.getPluginJarName()
+                      .set(mainFeature.getJarTask().flatMap(Jar::getArchiveFileName));
+                  task.getPluginOnlyRuntimeArtifacts().from(pluginOnlyRuntimeArtifacts);
+                  task.getBesuProvidedArtifacts().from(besuProvidedArtifactView.getFiles());
+                  task.getPackageIndex()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(IndexPluginPackagesTask.PACKAGE_INDEX_RELATIVE_PATH));
+                  task.getSplitPackagesReport()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(IndexPluginPackagesTask.SPLIT_PACKAGES_REPORT_RELATIVE_PATH));
+                });
+
     project
         .getTasks()
         .withType(Jar.class)
         .configureEach(
             jar -> {
-              jar.dependsOn(CollectPluginOnlyRuntimeArtifactsTask.TASK_NAME);
               jar.from(
-                  project
-                      .getLayout()
-                      .getBuildDirectory()
-                      .file(PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH),
+                  collectTask.flatMap(CollectPluginOnlyRuntimeArtifactsTask::getArtifactsCatalog),
+                  copySpec -> copySpec.into("META-INF/"));
+              // The binary catalog is optional, so it is added as a possibly empty list
+              jar.from(
+                  collectTask
+                      .flatMap(CollectPluginOnlyRuntimeArtifactsTask::getBinaryArtifactsCatalog)
+                      .map(List::of)
+                      .orElse(List.of()),
+                  copySpec -> copySpec.into("META-INF/"));
+              jar.from(
+                  indexPackagesTask.flatMap(IndexPluginPackagesTask::getPackageIndex),
                   copySpec -> copySpec.into("META-INF/"));
             });
 
-    JvmFeatureInternal mainFeature = JavaPluginHelper.getJavaComponent(project).getMainFeature();
+    // The training launches run on the toolchain of the project, like its tests
+    Provider<JavaLauncher> javaLauncher =
+        project
+            .getExtensions()
+            .getByType(JavaToolchainService.class)
+            .launcherFor(
+                project.getExtensions().getByType(JavaPluginExtension.class).getToolchain());
+    TaskProvider<GeneratePluginClassListTask> classListTask =
+        project
+            .getTasks()
+            .register(
+                GeneratePluginClassListTask.TASK_NAME,
+                GeneratePluginClassListTask.class,
+                task -> {
+                  task.setGroup("Distribution");
+                  task.setDescription(
+                      "Records the classes loaded by a training launch of the plugins on the Besu"
+                          + " classpath, as a class list and a dynamic CDS archive.");
+                  task.getPluginJar().set(mainFeature.getJarTask().flatMap(Jar::getArchiveFile));
+                  task.getPluginOnlyRuntimeArtifacts().from(pluginOnlyRuntimeArtifacts);
+                  task.getBesuProvidedArtifacts().from(besuProvidedArtifactView.getFiles());
+                  task.getJavaLauncher().convention(javaLauncher);
+                  task.getPluginClassNames()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(
+                                  GeneratePluginClassListTask.CDS_DIRECTORY_RELATIVE_PATH
+                                      + "plugin-classes.txt"));
+                  task.getClassList()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(
+                                  GeneratePluginClassListTask.CDS_DIRECTORY_RELATIVE_PATH
+                                      + project.getName()
+                                      + ".classlist"));
+                  task.getDynamicArchive()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(
+                                  GeneratePluginClassListTask.CDS_DIRECTORY_RELATIVE_PATH
+                                      + project.getName()
+                                      + ".jsa"));
+                });
+    project
+        .getTasks()
+        .register(
+            BenchmarkPluginClassLoadingTask.TASK_NAME,
+            BenchmarkPluginClassLoadingTask.class,
+            task -> {
+              task.setGroup("Verification");
+              task.setDescription(
+                  "Measures the class loading time of the plugins, with and without the dynamic"
+                      + " CDS archive of the training launch.");
+              task.getPluginJar().set(mainFeature.getJarTask().flatMap(Jar::getArchiveFile));
+              task.getPluginOnlyRuntimeArtifacts().from(pluginOnlyRuntimeArtifacts);
+              task.getBesuProvidedArtifacts().from(besuProvidedArtifactView.getFiles());
+              task.getJavaLauncher().convention(javaLauncher);
+              task.getPluginClassNames()
+                  .set(classListTask.flatMap(GeneratePluginClassListTask::getPluginClassNames));
+              task.getDynamicArchive()
+                  .set(classListTask.flatMap(GeneratePluginClassListTask::getDynamicArchive));
+              task.getIterations().convention(10);
+              task.getReport()
+                  .convention(
+                      project
+                          .getLayout()
+                          .getBuildDirectory()
+                          .file(BenchmarkPluginClassLoadingTask.REPORT_RELATIVE_PATH));
+              // A measurement is never up to date
+              task.getOutputs().upToDateWhen(t -> false);
+            });
+    // The class list is opt-in, the archive itself is only valid for the JVM that created it
+    Provider<List<File>> classList =
+        extension
+            .getGenerateClassList()
+            .flatMap(
+                generate ->
+                    generate
+                        ? classListTask
+                            .flatMap(GeneratePluginClassListTask::getClassList)
+                            .map(file -> List.of(file.getAsFile()))
+                        : project.getProviders().provider(List::<File>of));
+
+    // The distribution archives are built from a staging directory, assembled in parallel
+    TaskProvider<AssemblePluginDistributionTask> assembleTask =
+        project
+            .getTasks()
+            .register(
+                AssemblePluginDistributionTask.TASK_NAME,
+                AssemblePluginDistributionTask.class,
+                task -> {
+                  task.setGroup("Distribution");
+                  task.setDescription(
+                      "Stages the plugin jar and its plugin only runtime artifacts for the"
+                          + " distribution archives.");
+                  task.getArtifacts().from(mainFeature.getJarTask());
+                  task.getArtifacts().from(pluginOnlyRuntimeArtifacts);
+                  task.getArtifacts().from(classList);
+                  task.getStagingDirectory()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .dir(AssemblePluginDistributionTask.STAGING_DIRECTORY_RELATIVE_PATH));
+                  task.getHashesDirectory()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .dir(AssemblePluginDistributionTask.HASHES_DIRECTORY_RELATIVE_PATH));
+                  task.getArtifactHashesFile()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(AssemblePluginDistributionTask.ARTIFACT_HASHES_RELATIVE_PATH));
+                });
+
+    // The staged distribution, the catalog and the files added as is to the distribution, for the
+    // bundle of several plugins
+    project
+        .getConfigurations()
+        .consumable(
+            DISTRIBUTION_ELEMENTS_CONFIGURATION_NAME,
+            configuration -> {
+              configuration
+                  .getAttributes()
+                  .attribute(
+                      Category.CATEGORY_ATTRIBUTE,
+                      project.getObjects().named(Category.class, DISTRIBUTION_CATEGORY));
+              configuration
+                  .getOutgoing()
+                  .artifact(
+                      assembleTask.flatMap(AssemblePluginDistributionTask::getStagingDirectory));
+              configuration
+                  .getOutgoing()
+                  .artifact(
+                      collectTask.flatMap(
+                          CollectPluginOnlyRuntimeArtifactsTask::getArtifactsCatalog));
+              configuration
+                  .getOutgoing()
+                  .artifact(
+                      project
+                          .getLayout()
+                          .getProjectDirectory()
+                          .dir("src/" + DISTRIBUTION_CONTENTS_DIRECTORY_NAME));
+            });
+
+    TaskProvider<CheckDuplicateClassesTask> checkDuplicateClassesTask =
+        project
+            .getTasks()
+            .register(
+                CheckDuplicateClassesTask.TASK_NAME,
+                CheckDuplicateClassesTask.class,
+                task -> {
+                  task.setGroup("Verification");
+                  task.setDescription(
+                      "Checks that the plugin only runtime artifacts do not duplicate classes.");
+                  task.getMetricsService().set(metrics);
+                  task.usesService(metrics);
+                  task.getPluginOnlyRuntimeArtifacts().from(pluginOnlyRuntimeArtifacts);
+                  task.getBesuProvidedArtifacts().from(besuProvidedArtifactView.getFiles());
+                  task.getFailOnDuplicateClasses().set(extension.getFailOnDuplicateClasses());
+                  task.getClassEntriesCache()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .dir(CheckDuplicateClassesTask.CLASS_ENTRIES_CACHE_RELATIVE_PATH));
+                  task.getReportFile()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(CheckDuplicateClassesTask.REPORT_RELATIVE_PATH));
+                });
+    project.getTasks().named("check").configure(task -> task.dependsOn(checkDuplicateClassesTask));
 
     DistributionContainer distributionContainer =
         (DistributionContainer) project.getExtensions().getByName("distributions");
@@ -70,25 +481,46 @@ public abstract class BesuPluginDistribution implements Plugin<Project> {
         .configure(
             dist -> {
               CopySpec childSpec = project.copySpec();
-              childSpec.from(mainFeature.getJarTask());
-              childSpec.from(project.file("src/dist"));
-              childSpec.from(
-                  mainFeature.getRuntimeClasspathConfiguration(),
-                  copySpec ->
-                      copySpec.exclude(element -> providedByBesu(project, element.getFile())));
+              childSpec.from(assembleTask);
+              childSpec.from(project.file("src/" + DISTRIBUTION_CONTENTS_DIRECTORY_NAME));
 
               dist.getContents().with(childSpec);
             });
-  }
 
-  private boolean providedByBesu(Project project, File file) {
-    Map<File, ResolvedDependency> pluginOnlyRuntimeArtifacts =
-        (Map<File, ResolvedDependency>)
+    // Archive task properties are not lazy, so the extension is read once the project is evaluated
+    project.afterEvaluate(
+        p -> {
+          if (extension.getReproducibleDistribution().get()) {
             project
-                .getExtensions()
-                .getExtraProperties()
-                .get(CollectPluginOnlyRuntimeArtifactsTask.BESU_PLUGIN_ONLY_RUNTIME_ARTIFACTS);
-    project.getLogger().lifecycle("is provided by Besu {}", file);
-    return !pluginOnlyRuntimeArtifacts.containsKey(file);
+                .getTasks()
+                .withType(AbstractArchiveTask.class)
+                .matching(task -> DISTRIBUTION_ARCHIVE_TASK_NAMES.contains(task.getName()))
+                .configureEach(BesuPluginDistribution::configureReproducibleArchive);
+          }
+        });
+  }
+
+  /**
+   * The distribution contains mostly jars, that are already compressed, so its entries are stored,
+   * and the tar is not compressed either. The compression of a zip applies to all its entries, so
+   * the few other files, like the class list or the files of {@code src/dist}, are stored too.
+   *
+   * <p>Gradle 9 archives already have a fixed order, fixed timestamps and normalized permissions,
+   * that are set here too for older versions. The permissions are normalized by type rather than
+   * forced, so that the executable files, like the scripts of {@code src/dist}, stay executable.
+   */
+  private static void configureReproducibleArchive(final AbstractArchiveTask archive) {
+    archive.setPreserveFileTimestamps(false);
+    archive.setReproducibleFileOrder(true);
+    archive.dirPermissions(permissions -> permissions.unix(0755));
+    archive.eachFile(
+        file ->
+            file.permissions(
+                permissions -> permissions.unix(file.getFile().canExecute() ? 0755 : 0644)));
+    if (archive instanceof Zip zip) {
+      zip.setEntryCompression(ZipEntryCompression.STORED);
+    } else if (archive instanceof Tar tar) {
+      tar.setCompression(Compression.NONE);
+    }
   }
 }
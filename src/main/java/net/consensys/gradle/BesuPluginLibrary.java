@@ -15,53 +15,58 @@
 package net.consensys.gradle;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import groovy.json.JsonSlurper;
-import groovy.xml.DOMBuilder;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.ArtifactView;
 import org.gradle.api.artifacts.Configuration;
-import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.DependencySet;
-import org.gradle.api.artifacts.ExternalModuleDependency;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.plugins.JavaLibraryPlugin;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.compile.AbstractCompile;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 public abstract class BesuPluginLibrary implements Plugin<Project> {
-  static final String BESU_PROVIDED_DEPENDENCIES =
-      BesuPluginLibrary.class.getName() + ".besuBomDependencies";
   static final String RESOLVE_BESU_DEPS_TASK_NAME = "resolveBesuProvidedDependencies";
-  static final String RESOLVE_BESU_DEPS_MARKER_RELATIVE_PATH =
-      "reports/dependencies/besu-resolved-deps.marker";
   static final String BESU_BOM_DEPENDENCY_COORDINATES = "org.hyperledger.besu:bom";
   static final String BESU_MAIN_DEPENDENCY_COORDINATES = "org.hyperledger.besu.internal:besu-app";
-  static final String BESU_ARTIFACTS_CATALOG_RESOURCE_NAME =
-      "/META-INF/besu-artifacts-catalog.json";
+  static final String BESU_ARTIFACTS_CATALOG_ENTRY_NAME = "META-INF/besu-artifacts-catalog.json";
+
+  /** The classifier of the artifacts catalog, when it is published next to the Besu main jar. */
+  static final String BESU_ARTIFACTS_CATALOG_CLASSIFIER = "catalog";
+
+  static final String BESU_GROUP = "org.hyperledger.besu";
+  static final String HYPERLEDGER_BESU_REPO =
+      "https://hyperledger.jfrog.io/hyperledger/besu-maven/";
+  private static final Map<String, String> DEFAULT_REPOSITORY_ROUTING =
+      Map.of(
+          "tech.pegasys", "https://artifacts.consensys.net/public/maven/maven/",
+          "com.splunk", "https://splunk.jfrog.io/splunk/ext-releases-local/");
   private static final Set<String> ANNOTATION_PROCESSOR_DEPENDENCIES =
       Set.of("com.google.auto.service:auto-service");
 
+  private Provider<BesuDependencyModel> besuDependencyModel;
+
   @Override
   public void apply(final Project project) {
     project.getPluginManager().apply(JavaLibraryPlugin.class);
@@ -71,12 +76,190 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
         project.getExtensions().create("besuPlugin", BesuPluginLibraryExtension.class);
 
     // Set default value for besuRepo
-    extension.getBesuRepo().convention("https://hyperledger.jfrog.io/hyperledger/besu-maven/");
+    extension.getBesuRepo().convention(HYPERLEDGER_BESU_REPO);
+    extension.getBinaryArtifactsCatalog().convention(false);
+    extension.getFailOnDuplicateClasses().convention(false);
+    extension.getFailOnDependencyConflicts().convention(false);
+    extension.getShrinkPluginOnlyArtifacts().convention(false);
+    extension.getGenerateClassList().convention(false);
+    extension.getReproducibleDistribution().convention(false);
+    extension.getMavenLocal().convention(true);
     Provider<String> besuVersionProvider =
         extension.getBesuVersion().orElse(project.getProviders().gradleProperty("besuVersion"));
 
+    // The model is exposed as a provider, so the expensive BOM/catalog parsing only
+    // happens when a configuration or a task actually needs it, and it is shared by all
+    // the projects of the build through the model service.
+    Provider<BesuDependencyModelService> modelService =
+        BesuDependencyModelService.register(project);
+    Provider<BesuPluginMetricsService> metrics = BesuPluginMetricsService.register(project);
+    // The BOM is resolved together with the artifacts catalog, or with the Besu main jar when
+    // there is no catalog artifact, so that their downloads run concurrently, instead of one after
+    // the other. The catalog artifact is optional, so it is resolved leniently
+    Provider<String> besuBomNotation =
+        besuVersionProvider.map(
+            besuVersion -> BESU_BOM_DEPENDENCY_COORDINATES + ":" + besuVersion + "@pom");
+    FileCollection besuBomAndCatalog =
+        detachedConfiguration(
+                project,
+                besuBomNotation,
+                besuVersionProvider.map(
+                    besuVersion ->
+                        BESU_MAIN_DEPENDENCY_COORDINATES
+                            + ":"
+                            + besuVersion
+                            + ":"
+                            + BESU_ARTIFACTS_CATALOG_CLASSIFIER
+                            + "@json"))
+            .getIncoming()
+            .artifactView(view -> view.lenient(true))
+            .getFiles();
+    FileCollection besuBomAndMainJarConfiguration =
+        detachedConfiguration(
+            project,
+            besuBomNotation,
+            besuVersionProvider.map(
+                besuVersion -> BESU_MAIN_DEPENDENCY_COORDINATES + ":" + besuVersion + "@jar"));
+    // Only resolved, and the Besu main jar downloaded, when the catalog artifact is missing
+    FileCollection besuBomAndMainJar =
+        project.files(
+            besuBomAndCatalog
+                .getElements()
+                .map(
+                    files ->
+                        files.stream()
+                                .anyMatch(file -> file.getAsFile().getName().endsWith(".json"))
+                            ? List.of()
+                            : besuBomAndMainJarConfiguration));
+    Provider<RegularFile> besuDependencyModelFile =
+        project
+            .getLayout()
+            .getBuildDirectory()
+            .file(ResolveBesuProvidedDependenciesTask.BESU_DEPENDENCY_MODEL_RELATIVE_PATH);
+
     // Register eagerly so consumers can depend on this task during configuration.
-    project.getTasks().register(RESOLVE_BESU_DEPS_TASK_NAME);
+    TaskProvider<ResolveBesuProvidedDependenciesTask> resolveTask =
+        project
+            .getTasks()
+            .register(
+                RESOLVE_BESU_DEPS_TASK_NAME,
+                ResolveBesuProvidedDependenciesTask.class,
+                task -> {
+                  task.setGroup("Build");
+                  task.setDescription(
+                      "Resolves Besu BOM and catalog dependencies for Besu plugin builds.");
+                  task.getBesuVersion().set(besuVersionProvider);
+                  task.getBesuRepo().set(extension.getBesuRepo());
+                  task.getBesuBomAndCatalog().from(besuBomAndCatalog);
+                  task.getBesuBomAndMainJar().from(besuBomAndMainJar);
+                  task.getModelService().set(modelService);
+                  task.usesService(modelService);
+                  task.getMetricsService().set(metrics);
+                  task.usesService(metrics);
+                  task.getBesuDependencyModelFile().set(besuDependencyModelFile);
+                  task.getOutputs().upToDateWhen(t -> !task.resolvesSnapshot());
+                  task.getOutputs()
+                      .cacheIf("Besu snapshot versions can change", t -> !task.resolvesSnapshot());
+                });
+
+    TaskProvider<CheckBesuDependencyConflictsTask> checkConflictsTask =
+        project
+            .getTasks()
+            .register(
+                CheckBesuDependencyConflictsTask.TASK_NAME,
+                CheckBesuDependencyConflictsTask.class,
+                task -> {
+                  task.setGroup("Verification");
+                  task.setDescription(
+                      "Checks the runtime dependencies against the dependencies provided by Besu.");
+                  task.getBesuVersion().set(besuVersionProvider);
+                  task.getBesuRepo().set(extension.getBesuRepo());
+                  task.getBesuDependencyModelFile()
+                      .set(
+                          resolveTask.flatMap(
+                              ResolveBesuProvidedDependenciesTask::getBesuDependencyModelFile));
+                  task.getRuntimeClasspathRootComponent()
+                      .set(
+                          project
+                              .getConfigurations()
+                              .getByName("runtimeClasspath")
+                              .getIncoming()
+                              .getResolutionResult()
+                              .getRootComponent());
+                  // Only the artifacts of the external modules are compared, so that the check
+                  // does not depend on the jars of the other projects
+                  ArtifactView runtimeModuleArtifacts =
+                      moduleArtifactView(project, "runtimeClasspath");
+                  ArtifactView compileModuleArtifacts =
+                      moduleArtifactView(project, "compileClasspath");
+                  task.getModuleArtifacts()
+                      .from(runtimeModuleArtifacts.getFiles(), compileModuleArtifacts.getFiles());
+                  Provider<List<ResolvedArtifactResult>> moduleArtifacts =
+                      runtimeModuleArtifacts
+                          .getArtifacts()
+                          .getResolvedArtifacts()
+                          .zip(
+                              compileModuleArtifacts.getArtifacts().getResolvedArtifacts(),
+                              (runtime, compile) ->
+                                  Stream.concat(runtime.stream(), compile.stream()).toList());
+                  task.getModuleArtifactIdentifiers()
+                      .set(
+                          moduleArtifacts.map(
+                              artifacts ->
+                                  artifacts.stream().map(ResolvedArtifactResult::getId).toList()));
+                  task.getModuleArtifactFiles()
+                      .set(
+                          moduleArtifacts.map(
+                              artifacts ->
+                                  artifacts.stream()
+                                      .map(ResolvedArtifactResult::getFile)
+                                      .toList()));
+                  task.getFailOnConflicts().set(extension.getFailOnDependencyConflicts());
+                  task.getModelService().set(modelService);
+                  task.usesService(modelService);
+                  task.getReportFile()
+                      .convention(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(CheckBesuDependencyConflictsTask.REPORT_RELATIVE_PATH));
+                });
+    project.getTasks().named("check").configure(task -> task.dependsOn(checkConflictsTask));
+
+    // The cache and the model file are read through a value source, so that they are not
+    // inputs of the configuration cache
+    Provider<BesuDependencyModelSource.LoadedModel> besuDependencyModelSource =
+        project
+            .getProviders()
+            .of(
+                BesuDependencyModelSource.class,
+                spec -> {
+                  spec.getParameters().getBesuVersion().set(besuVersionProvider);
+                  spec.getParameters().getBesuRepo().set(extension.getBesuRepo());
+                  spec.getParameters()
+                      .getGradleUserHome()
+                      .set(project.getGradle().getGradleUserHomeDir());
+                  spec.getParameters()
+                      .getRefreshDependencies()
+                      .set(project.getGradle().getStartParameter().isRefreshDependencies());
+                  spec.getParameters().getBesuDependencyModelFile().set(besuDependencyModelFile);
+                  spec.getParameters().getBesuBomAndCatalog().from(besuBomAndCatalog);
+                  spec.getParameters().getBesuBomAndMainJar().from(besuBomAndMainJar);
+                });
+    Provider<BesuDependencyModel> besuDependencyModel =
+        modelService.map(
+            service ->
+                service.loadModel(
+                    requireBesuVersion(besuVersionProvider),
+                    extension.getBesuRepo().get(),
+                    () -> {
+                      BesuDependencyModelSource.LoadedModel loaded =
+                          besuDependencyModelSource.get();
+                      loaded.metrics().addTo(metrics.get());
+                      return loaded.model();
+                    }));
+
+    this.besuDependencyModel = besuDependencyModel;
 
     // Configure after project evaluation to allow extension configuration.
     // Only repositories and resolution strategies are set here — none of these
@@ -88,104 +271,19 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
           if (!project.hasProperty("besuRepo")) {
             project.getExtensions().getExtraProperties().set("besuRepo", besuRepo);
           }
+          // Build scripts read the resolved Besu version from the besuVersion extra property
+          if (besuVersionProvider.isPresent()) {
+            project
+                .getExtensions()
+                .getExtraProperties()
+                .set("besuVersion", besuVersionProvider.get());
+          }
 
-          configureRepositories(project, besuRepo);
+          configureRepositories(project, extension, besuRepo);
           addPlatformConstraints(project, besuVersionProvider);
-          excludeOldCoordinatesBesuDependencies(project);
+          excludeOldCoordinatesBesuDependencies(project, metrics);
           rewriteOldCoordinatesBesuDependencies(project, besuVersionProvider);
 
-          // Lazy dependency injection: parse BOM + catalog only when a configuration
-          // actually resolves (execution phase), not during afterEvaluate.
-          AtomicBoolean initialized = new AtomicBoolean(false);
-          Object resolutionLock = new Object();
-          AtomicReference<List<Dependency>> mergedDepsRef = new AtomicReference<>(List.of());
-          AtomicReference<Map<String, String>> managedVersionsByCoordinatesRef =
-              new AtomicReference<>(Map.of());
-          Runnable ensureResolved =
-              () -> {
-                if (initialized.get()) {
-                  return;
-                }
-                synchronized (resolutionLock) {
-                  if (initialized.get()) {
-                    return;
-                  }
-                  String besuVersion = requireBesuVersion(besuVersionProvider);
-                  List<Dependency> bomDeps = resolveBomDependencies(project, besuVersion);
-                  List<BesuProvidedDependency> catalogDeps =
-                      resolveCatalogDependencies(project, besuVersion);
-
-                  List<Dependency> mergedDeps = mergeDependencies(bomDeps, catalogDeps);
-                  Map<String, String> managedVersionsByCoordinates = new HashMap<>();
-                  for (Dependency dep : mergedDeps) {
-                    String managedVersion = dep.getVersion();
-                    if (dep instanceof ExternalModuleDependency extDep) {
-                      String requiredVersion = extDep.getVersionConstraint().getRequiredVersion();
-                      if (requiredVersion != null && !requiredVersion.isBlank()) {
-                        managedVersion = requiredVersion;
-                      }
-                    }
-                    if (dep.getGroup() != null
-                        && dep.getName() != null
-                        && managedVersion != null
-                        && !managedVersion.isBlank()) {
-                      managedVersionsByCoordinates.put(
-                          dep.getGroup() + ":" + dep.getName(), managedVersion);
-                    }
-                  }
-                  project
-                      .getExtensions()
-                      .getExtraProperties()
-                      .set(BESU_PROVIDED_DEPENDENCIES, List.copyOf(catalogDeps));
-                  project.getExtensions().getExtraProperties().set("besuVersion", besuVersion);
-                  mergedDepsRef.set(List.copyOf(mergedDeps));
-                  managedVersionsByCoordinatesRef.set(Map.copyOf(managedVersionsByCoordinates));
-                  initialized.set(true);
-                }
-              };
-
-          project
-              .getTasks()
-              .named(RESOLVE_BESU_DEPS_TASK_NAME)
-              .configure(
-                  task -> {
-                    task.setGroup("Build");
-                    task.setDescription(
-                        "Resolves Besu BOM and catalog dependencies for Besu plugin builds.");
-                    task.getInputs().property("besuVersion", besuVersionProvider);
-                    task.getOutputs()
-                        .file(
-                            project
-                                .getLayout()
-                                .getBuildDirectory()
-                                .file(RESOLVE_BESU_DEPS_MARKER_RELATIVE_PATH));
-                    task.doLast(
-                        t -> {
-                          ensureResolved.run();
-                          var markerFile =
-                              project
-                                  .getLayout()
-                                  .getBuildDirectory()
-                                  .file(RESOLVE_BESU_DEPS_MARKER_RELATIVE_PATH)
-                                  .get()
-                                  .getAsFile();
-                          markerFile.getParentFile().mkdirs();
-                          try {
-                            Files.writeString(
-                                markerFile.toPath(),
-                                "besuVersion="
-                                    + requireBesuVersion(besuVersionProvider)
-                                    + System.lineSeparator(),
-                                StandardCharsets.UTF_8);
-                          } catch (IOException e) {
-                            throw new RuntimeException(
-                                "Unable to write Besu dependency resolution marker file "
-                                    + markerFile,
-                                e);
-                          }
-                        });
-                  });
-
           project
               .getTasks()
               .withType(AbstractCompile.class)
@@ -198,9 +296,9 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
                 .getByName(configName)
                 .withDependencies(
                     (DependencySet deps) -> {
-                      ensureResolved.run();
-                      for (Dependency dep : mergedDepsRef.get()) {
-                        deps.add(dep);
+                      for (BesuProvidedDependency dep :
+                          besuDependencyModel.get().mergedDependencies()) {
+                        deps.add(project.getDependencies().create(dep.notation()));
                       }
                     });
           }
@@ -212,15 +310,18 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
                       cfg.getResolutionStrategy()
                           .eachDependency(
                               details -> {
-                                ensureResolved.run();
+                                long start = System.nanoTime();
                                 String key =
                                     details.getRequested().getGroup()
                                         + ":"
                                         + details.getRequested().getName();
                                 String managedVersion =
-                                    managedVersionsByCoordinatesRef.get().get(key);
+                                    besuDependencyModel
+                                        .get()
+                                        .managedVersionsByCoordinates()
+                                        .get(key);
                                 boolean isBesuCoordinate =
-                                    "org.hyperledger.besu".equals(details.getRequested().getGroup())
+                                    BESU_GROUP.equals(details.getRequested().getGroup())
                                         || "org.hyperledger.besu.internal"
                                             .equals(details.getRequested().getGroup());
                                 boolean hasRequestedVersion =
@@ -230,7 +331,17 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
                                     && !managedVersion.isBlank()
                                     && (!hasRequestedVersion || isBesuCoordinate)) {
                                   details.useVersion(managedVersion);
+                                  metrics
+                                      .get()
+                                      .count(
+                                          BesuPluginMetricsService.DEPENDENCY_REWRITE,
+                                          "rewritten",
+                                          1);
                                 }
+                                metrics
+                                    .get()
+                                    .recordDuration(
+                                        BesuPluginMetricsService.DEPENDENCY_REWRITE, start);
                               }));
 
           project
@@ -238,18 +349,22 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
               .getByName("annotationProcessor")
               .withDependencies(
                   (DependencySet deps) -> {
-                    ensureResolved.run();
-                    for (Dependency dep : mergedDepsRef.get()) {
-                      if (ANNOTATION_PROCESSOR_DEPENDENCIES.contains(
-                          dep.getGroup() + ":" + dep.getName())) {
-                        deps.add(dep);
+                    for (BesuProvidedDependency dep :
+                        besuDependencyModel.get().mergedDependencies()) {
+                      if (ANNOTATION_PROCESSOR_DEPENDENCIES.contains(dep.coordinates())) {
+                        deps.add(project.getDependencies().create(dep.notation()));
                       }
                     }
                   });
         });
   }
 
-  private String requireBesuVersion(final Provider<String> besuVersionProvider) {
+  /** The model of the dependencies provided by Besu, for the other plugins of this project. */
+  Provider<BesuDependencyModel> getBesuDependencyModel() {
+    return besuDependencyModel;
+  }
+
+  private static String requireBesuVersion(final Provider<String> besuVersionProvider) {
     if (!besuVersionProvider.isPresent()) {
       throw new IllegalStateException(
           "besuVersion must be set either in besuPlugin extension or as a project property");
@@ -284,117 +399,198 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
     }
   }
 
-  private List<Dependency> resolveBomDependencies(final Project project, final String besuVersion) {
-    Configuration bomConfiguration =
-        project
-            .getConfigurations()
-            .detachedConfiguration(
-                project
-                    .getDependencies()
-                    .create(BESU_BOM_DEPENDENCY_COORDINATES + ":" + besuVersion + "@pom"));
-    bomConfiguration.setCanBeResolved(true);
-    File besuBom = bomConfiguration.getSingleFile();
-    try {
-      return parseBesuBOM(project, besuBom);
-    } catch (ParserConfigurationException | IOException | SAXException e) {
-      throw new RuntimeException(e);
+  /**
+   * Parses the Besu BOM and artifacts catalog. The catalog is read from its own artifact when Besu
+   * publishes one, else from the Besu main jar, that is then downloaded.
+   *
+   * @param besuBomAndCatalog the BOM and the catalog artifact, resolved leniently
+   * @param besuBomAndMainJar the BOM and the Besu main jar, only resolved without catalog artifact
+   */
+  static BesuDependencyModel parseBesuDependencyModel(
+      final BesuPluginMetrics metrics,
+      final String besuVersion,
+      final FileCollection besuBomAndCatalog,
+      final FileCollection besuBomAndMainJar) {
+    long downloadStart = System.nanoTime();
+    Set<File> bomAndCatalog = besuBomAndCatalog.getFiles();
+    File besuBomFile = withExtension(bomAndCatalog, ".pom");
+    File besuCatalogFile = withExtension(bomAndCatalog, ".json");
+    File besuMainJarFile = null;
+    if (besuBomFile == null || besuCatalogFile == null) {
+      // Without catalog artifact, or when the BOM could not be resolved, that then fails with its
+      // cause rather than being skipped
+      Set<File> bomAndMainJar = besuBomAndMainJar.getFiles();
+      besuBomFile = withExtension(bomAndMainJar, ".pom");
+      besuCatalogFile = null;
+      besuMainJarFile = withExtension(bomAndMainJar, ".jar");
+      if (besuBomFile == null || besuMainJarFile == null) {
+        throw new IllegalStateException(
+            "Besu BOM and main jar of version %s not found, resolved %s"
+                .formatted(besuVersion, bomAndMainJar));
+      }
     }
+    metrics.recordDuration(BesuPluginMetricsService.DOWNLOAD, downloadStart);
+    metrics.count(
+        BesuPluginMetricsService.DOWNLOAD, "catalogArtifact", besuCatalogFile != null ? 1 : 0);
+
+    // The files are already downloaded, parsing them is cheap and runs on the calling thread
+    File bomFile = besuBomFile;
+    File catalogFile = besuCatalogFile;
+    File mainJarFile = besuMainJarFile;
+    List<BesuProvidedDependency> bomDependencies =
+        metrics.time(BesuPluginMetricsService.BOM_PARSE, () -> BesuBomParser.parse(bomFile));
+    List<BesuProvidedDependency> catalogDependencies =
+        metrics.time(
+            BesuPluginMetricsService.CATALOG_EXTRACTION,
+            () ->
+                parseBesuDependencyCatalog(
+                    catalogFile != null
+                        ? readBesuArtifactsCatalog(catalogFile)
+                        : readBesuDependencyCatalog(mainJarFile)));
+
+    BesuDependencyModel model =
+        metrics.time(
+            BesuPluginMetricsService.MERGE,
+            () -> new BesuDependencyModel(besuVersion, bomDependencies, catalogDependencies));
+    metrics.count(BesuPluginMetricsService.BOM_PARSE, "dependencies", bomDependencies.size());
+    metrics.count(
+        BesuPluginMetricsService.CATALOG_EXTRACTION, "dependencies", catalogDependencies.size());
+    return model;
   }
 
-  private List<BesuProvidedDependency> resolveCatalogDependencies(
-      final Project project, final String besuVersion) {
-    Configuration besuDependencyCatalogConfiguration =
-        project
-            .getConfigurations()
-            .detachedConfiguration(
-                project
-                    .getDependencies()
-                    .create(BESU_MAIN_DEPENDENCY_COORDINATES + ":" + besuVersion + "@jar"));
-    besuDependencyCatalogConfiguration.setCanBeResolved(true);
-    File besuMainJar = besuDependencyCatalogConfiguration.getSingleFile();
-    String besuDependencyCatalog;
-    try (FileSystem zipFs = FileSystems.newFileSystem(besuMainJar.toPath())) {
-      besuDependencyCatalog = Files.readString(zipFs.getPath(BESU_ARTIFACTS_CATALOG_RESOURCE_NAME));
+  private static File withExtension(final Set<File> files, final String extension) {
+    return files.stream()
+        .filter(file -> file.getName().endsWith(extension))
+        .findFirst()
+        .orElse(null);
+  }
+
+  private static String readBesuArtifactsCatalog(final File file) {
+    try {
+      return Files.readString(file.toPath(), StandardCharsets.UTF_8);
     } catch (IOException e) {
-      throw new RuntimeException(e);
+      throw new RuntimeException("Unable to read Besu artifacts catalog " + file, e);
     }
+  }
 
+  /**
+   * Reads the model file written by the resolve task, returns null if it is missing or if it is not
+   * valid for the given Besu version and repository.
+   */
+  static BesuDependencyModel readBesuDependencyModel(
+      final File modelFile, final String besuVersion, final String besuRepo) {
     try {
-      return parseBesuDependencyCatalog(project, besuDependencyCatalog);
-    } catch (ParserConfigurationException | IOException | SAXException e) {
-      throw new RuntimeException(e);
+      return BesuDependencyModel.readFile(modelFile.toPath(), besuVersion, besuRepo);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read Besu dependency model file " + modelFile, e);
     }
   }
 
-  private void configureRepositories(final Project project, final String besuRepo) {
-    project
-        .getRepositories()
-        .maven(
-            mavenArtifactRepository -> {
-              mavenArtifactRepository.setUrl(URI.create(besuRepo));
-              mavenArtifactRepository.mavenContent(
-                  mavenRepositoryContentDescriptor ->
-                      mavenRepositoryContentDescriptor.includeGroupAndSubgroups(
-                          "org.hyperledger.besu"));
-            });
-    project
-        .getRepositories()
-        .maven(
-            mavenArtifactRepository -> {
-              mavenArtifactRepository.setUrl(
-                  URI.create("https://hyperledger.jfrog.io/hyperledger/besu-maven/"));
-              mavenArtifactRepository.mavenContent(
-                  mavenRepositoryContentDescriptor ->
-                      mavenRepositoryContentDescriptor.includeGroupAndSubgroups(
-                          "org.hyperledger.besu"));
-            });
-    project
-        .getRepositories()
-        .maven(
-            mavenArtifactRepository -> {
-              mavenArtifactRepository.setUrl(
-                  URI.create("https://artifacts.consensys.net/public/maven/maven/"));
-              mavenArtifactRepository.mavenContent(
-                  mavenRepositoryContentDescriptor ->
-                      mavenRepositoryContentDescriptor.includeGroupAndSubgroups("tech.pegasys"));
-            });
-    project
-        .getRepositories()
-        .maven(
-            mavenArtifactRepository -> {
-              mavenArtifactRepository.setUrl(
-                  URI.create("https://splunk.jfrog.io/splunk/ext-releases-local/"));
-              mavenArtifactRepository.mavenContent(
-                  mavenRepositoryContentDescriptor ->
-                      mavenRepositoryContentDescriptor.includeGroupAndSubgroups("com.splunk"));
+  /** The artifacts of the external modules of a configuration, skipping the missing ones. */
+  private static ArtifactView moduleArtifactView(
+      final Project project, final String configurationName) {
+    return project
+        .getConfigurations()
+        .getByName(configurationName)
+        .getIncoming()
+        .artifactView(
+            view -> {
+              view.lenient(true);
+              view.componentFilter(component -> component instanceof ModuleComponentIdentifier);
             });
+  }
 
-    project.getRepositories().mavenCentral();
-    project.getRepositories().mavenLocal();
+  @SafeVarargs
+  private static Configuration detachedConfiguration(
+      final Project project, final Provider<String>... dependencyNotations) {
+    Configuration configuration = project.getConfigurations().detachedConfiguration();
+    configuration.setCanBeResolved(true);
+    for (Provider<String> dependencyNotation : dependencyNotations) {
+      configuration
+          .getDependencies()
+          .addLater(dependencyNotation.map(notation -> project.getDependencies().create(notation)));
+    }
+    return configuration;
   }
 
-  private List<Dependency> mergeDependencies(
-      final List<Dependency> bomDependencies,
-      final List<BesuProvidedDependency> besuProvidedDependencies) {
-    List<Dependency> mergedDependencies = new ArrayList<>(bomDependencies);
-    for (BesuProvidedDependency providedDependency : besuProvidedDependencies) {
-      if (bomDependencies.stream()
-          .noneMatch(
-              bomDependency ->
-                  bomDependency.getGroup().equals(providedDependency.dependency().getGroup())
-                      && bomDependency
-                          .getName()
-                          .equals(providedDependency.dependency().getName()))) {
-        mergedDependencies.add(providedDependency.dependency());
+  /**
+   * Reads the artifacts catalog from the Besu main jar. Only the zip central directory and the
+   * catalog entry are read, the rest of the jar is never inflated.
+   */
+  static String readBesuDependencyCatalog(final File besuMainJar) {
+    try (ZipFile zipFile = new ZipFile(besuMainJar)) {
+      ZipEntry catalogEntry = zipFile.getEntry(BESU_ARTIFACTS_CATALOG_ENTRY_NAME);
+      if (catalogEntry == null) {
+        throw new IllegalStateException(
+            "Besu artifacts catalog %s not found in %s"
+                .formatted(BESU_ARTIFACTS_CATALOG_ENTRY_NAME, besuMainJar));
       }
+      try (InputStream in = zipFile.getInputStream(catalogEntry)) {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
+  }
 
-    return mergedDependencies;
+  /**
+   * Declares one repository per routed URL, each being the only one its groups are resolved from,
+   * so that a dependency is looked up in a single repository instead of all of them in turn.
+   */
+  private void configureRepositories(
+      final Project project, final BesuPluginLibraryExtension extension, final String besuRepo) {
+    // The groups routed to each repository, by normalized URL
+    Map<String, List<String>> groupsByUrl = new TreeMap<>();
+    Map<String, String> routing = new TreeMap<>(DEFAULT_REPOSITORY_ROUTING);
+    routing.put(BESU_GROUP, besuRepo);
+    routing.putAll(extension.getRepositoryRouting().get());
+    routing.forEach(
+        (group, url) ->
+            groupsByUrl.computeIfAbsent(normalizeUrl(url), u -> new ArrayList<>()).add(group));
+    // The Hyperledger repository stays a fallback for Besu when it is routed elsewhere
+    String hyperledgerBesuRepo = normalizeUrl(HYPERLEDGER_BESU_REPO);
+    boolean besuFallback = !normalizeUrl(routing.get(BESU_GROUP)).equals(hyperledgerBesuRepo);
+
+    Map<String, MavenArtifactRepository> repositories = new TreeMap<>();
+    groupsByUrl
+        .keySet()
+        .forEach(url -> repositories.put(url, project.getRepositories().maven(r -> r.setUrl(url))));
+    if (besuFallback) {
+      repositories.computeIfAbsent(
+          hyperledgerBesuRepo, url -> project.getRepositories().maven(r -> r.setUrl(url)));
+    }
+    project.getRepositories().mavenCentral();
+    // The local repository is searched last, for Besu too, like a Besu built and published locally
+    MavenArtifactRepository mavenLocal =
+        extension.getMavenLocal().get() ? project.getRepositories().mavenLocal() : null;
+    groupsByUrl.forEach(
+        (url, groups) ->
+            groups.forEach(
+                group ->
+                    project
+                        .getRepositories()
+                        .exclusiveContent(
+                            exclusiveContent -> {
+                              exclusiveContent.forRepositories(repositories.get(url));
+                              if (besuFallback && group.equals(BESU_GROUP)) {
+                                exclusiveContent.forRepositories(
+                                    repositories.get(hyperledgerBesuRepo));
+                              }
+                              if (mavenLocal != null && group.equals(BESU_GROUP)) {
+                                exclusiveContent.forRepositories(mavenLocal);
+                              }
+                              exclusiveContent.filter(
+                                  filter -> filter.includeGroupAndSubgroups(group));
+                            })));
+  }
+
+  private static String normalizeUrl(final String url) {
+    String normalized = URI.create(url).normalize().toString();
+    return normalized.endsWith("/") ? normalized : normalized + "/";
   }
 
-  private List<BesuProvidedDependency> parseBesuDependencyCatalog(
-      final Project project, final String besuDependencyCatalog)
-      throws ParserConfigurationException, IOException, SAXException {
+  static List<BesuProvidedDependency> parseBesuDependencyCatalog(
+      final String besuDependencyCatalog) {
     List<BesuProvidedDependency> besuProvidedDependencies = new ArrayList<>();
 
     ArrayList json = (ArrayList) new JsonSlurper().parseText(besuDependencyCatalog);
@@ -402,67 +598,17 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
       Map<String, String> dependency = (Map<String, String>) o;
       besuProvidedDependencies.add(
           new BesuProvidedDependency(
-              project
-                  .getDependencies()
-                  .create(
-                      dependency.get("group")
-                          + ":"
-                          + dependency.get("name")
-                          + ":"
-                          + dependency.get("version")
-                          + "!!"
-                          + (dependency.containsKey("classifier")
-                              ? ":" + dependency.get("classifier")
-                              : "")),
+              dependency.get("group"),
+              dependency.get("name"),
+              dependency.get("version"),
+              dependency.get("classifier"),
               dependency.get("filename")));
     }
     return besuProvidedDependencies;
   }
 
-  private List<Dependency> parseBesuBOM(final Project project, final File besuBom)
-      throws ParserConfigurationException, IOException, SAXException {
-    List<Dependency> bomDependencies = new ArrayList<>();
-    Node dependencyManagementNode =
-        DOMBuilder.parse(new FileReader(besuBom))
-            .getDocumentElement()
-            .getElementsByTagName("dependencyManagement")
-            .item(0);
-
-    Element dependenciesElement = getElement(dependencyManagementNode, "dependencies");
-
-    List<Element> dependencyElements =
-        getElements(dependenciesElement.getElementsByTagName("dependency"), "dependency");
-
-    for (Element depElement : dependencyElements) {
-      var typeElement = depElement.getElementsByTagName("type");
-      boolean isBom =
-          typeElement.getLength() > 0
-              && depElement.getElementsByTagName("type").item(0).getTextContent().equals("pom");
-      if (!isBom) {
-        var groupId = depElement.getElementsByTagName("groupId").item(0).getTextContent();
-        var artifactId = depElement.getElementsByTagName("artifactId").item(0).getTextContent();
-        var version = depElement.getElementsByTagName("version").item(0).getTextContent();
-        var classifierElement = depElement.getElementsByTagName("classifier");
-
-        bomDependencies.add(
-            project
-                .getDependencies()
-                .create(
-                    groupId
-                        + ":"
-                        + artifactId
-                        + ":"
-                        + version
-                        + "!!"
-                        + (classifierElement.getLength() > 0
-                            ? ":" + classifierElement.item(0).getTextContent()
-                            : "")));
-      }
-    }
-    return bomDependencies;
-  }
-
-  private void excludeOldCoordinatesBesuDependencies(final Project project) {
+  private void excludeOldCoordinatesBesuDependencies(
+      final Project project, final Provider<BesuPluginMetricsService> metrics) {
     project
         .getConfigurations()
         .all(
@@ -473,15 +619,27 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
                         .getComponentSelection()
                         .all(
                             selection -> {
+                              long start = System.nanoTime();
                               ModuleComponentIdentifier requested = selection.getCandidate();
                               var groupId = requested.getGroup();
                               var moduleId = requested.getModule();
 
                               // Exclude Besu old coordinates
-                              if (isOldCoordinate(groupId, moduleId)) {
+                              if (BesuOld2NewCoordinatesMapping.isOldCoordinate(
+                                  groupId, moduleId)) {
                                 selection.reject(
                                     "Excluded Besu old coordinate: " + groupId + ":" + moduleId);
+                                metrics
+                                    .get()
+                                    .count(
+                                        BesuPluginMetricsService.CANDIDATE_SELECTION,
+                                        "rejected",
+                                        1);
                               }
+                              metrics
+                                  .get()
+                                  .recordDuration(
+                                      BesuPluginMetricsService.CANDIDATE_SELECTION, start);
                             });
                   });
             });
@@ -501,10 +659,9 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
                             substitution -> {
                               var requested = substitution.getRequested();
                               if (requested instanceof ModuleComponentSelector mcs) {
-                                var coord = mcs.getGroup() + ":" + mcs.getModule();
                                 var newCoord =
-                                    BesuOld2NewCoordinatesMapping.getOld2NewCoordinates()
-                                        .get(coord);
+                                    BesuOld2NewCoordinatesMapping.getNewCoordinates(
+                                        mcs.getGroup(), mcs.getModule());
 
                                 if (newCoord != null) {
                                   substitution.useTarget(
@@ -517,29 +674,21 @@ public abstract class BesuPluginLibrary implements Plugin<Project> {
             });
   }
 
-  private boolean isOldCoordinate(String group, String module) {
-    return BesuOld2NewCoordinatesMapping.getOld2NewCoordinates().containsKey(group + ":" + module);
-  }
+  record BesuProvidedDependency(
+      String group, String name, String version, String classifier, String filename) {
 
-  private Element getElement(Node node, String name) {
-    for (int i = 0; i < node.getChildNodes().getLength(); i++) {
-      if (node.getChildNodes().item(i).getNodeName().equals(name)) {
-        return (Element) node.getChildNodes().item(i);
-      }
+    String coordinates() {
+      return group + ":" + name;
     }
-    throw new RuntimeException(
-        "Element %s not found in node %s".formatted(name, node.getNodeName()));
-  }
 
-  private List<Element> getElements(NodeList nodeList, String name) {
-    List<Element> elements = new ArrayList<>(nodeList.getLength());
-    for (int i = 0; i < nodeList.getLength(); i++) {
-      if (nodeList.item(i).getNodeName().equals(name)) {
-        elements.add((Element) nodeList.item(i));
-      }
+    String notation() {
+      return group
+          + ":"
+          + name
+          + ":"
+          + version
+          + "!!"
+          + (classifier != null ? ":" + classifier : "");
     }
-    return elements;
   }
-
-  record BesuProvidedDependency(Dependency dependency, String filename) {}
 }
@@ -14,6 +14,8 @@
  */
 package net.consensys.gradle;
 
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 
 public abstract class BesuPluginLibraryExtension {
@@ -23,4 +25,51 @@ public abstract class BesuPluginLibraryExtension {
 
   /** The Maven repository URL where Besu artifacts are located. */
   public abstract Property<String> getBesuRepo();
+
+  /** Whether to also generate the compact binary plugin artifacts catalog, false by default. */
+  public abstract Property<Boolean> getBinaryArtifactsCatalog();
+
+  /** Whether duplicate classes in the plugin distribution fail the build, false by default. */
+  public abstract Property<Boolean> getFailOnDuplicateClasses();
+
+  /**
+   * Whether the conflicts between the runtime dependencies and the dependencies provided by Besu
+   * fail the build, false by default.
+   */
+  public abstract Property<Boolean> getFailOnDependencyConflicts();
+
+  /**
+   * Whether to remove from the plugin only runtime artifacts the classes unreachable from the
+   * plugins, false by default.
+   */
+  public abstract Property<Boolean> getShrinkPluginOnlyArtifacts();
+
+  /** The patterns of the classes to keep when shrinking, like {@code com.example.**}. */
+  public abstract ListProperty<String> getShrinkKeepRules();
+
+  /**
+   * Whether to train the plugins on the Besu classpath, to ship the list of the classes they load
+   * for the CDS archive of Besu, false by default.
+   */
+  public abstract Property<Boolean> getGenerateClassList();
+
+  /**
+   * Whether the distribution archives are written for fast unpacking, with their entries stored
+   * without compression, in a fixed order, with fixed timestamps, and with 0755 permissions for the
+   * executable files and 0644 for the others, false by default.
+   */
+  public abstract Property<Boolean> getReproducibleDistribution();
+
+  /**
+   * Routes of groups, and their subgroups, to the only repository they are resolved from, like
+   * {@code ['com.example': 'https://repo.example.com/maven/']}, on top of the default ones for the
+   * Besu, Consensys and Splunk groups. Other groups are resolved from Maven Central.
+   */
+  public abstract MapProperty<String, String> getRepositoryRouting();
+
+  /**
+   * Whether the local Maven repository is searched, last, for the groups not routed and for the
+   * Besu group, true by default.
+   */
+  public abstract Property<Boolean> getMavenLocal();
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.util.function.Supplier;
+
+/** Receives the time spent, and the work done, in each phase of the Besu dependency handling. */
+interface BesuPluginMetrics {
+
+  /** Adds the given duration, in nanoseconds, to the given phase. */
+  void addDuration(String phase, long nanos);
+
+  /** Adds the given amount to the given counter of the given phase. */
+  void count(String phase, String counter, long amount);
+
+  /** Adds the time elapsed since the given {@link System#nanoTime()} to the given phase. */
+  default void recordDuration(final String phase, final long startNanos) {
+    addDuration(phase, System.nanoTime() - startNanos);
+  }
+
+  /** Runs the action, and adds its duration to the given phase. */
+  default <T> T time(final String phase, final Supplier<T> action) {
+    long start = System.nanoTime();
+    try {
+      return action.get();
+    } finally {
+      recordDuration(phase, start);
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import groovy.json.JsonBuilder;
+import groovy.json.JsonSlurper;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Build scoped collector of the time spent, and of the work done, in each phase of the Besu
+ * dependency handling. At the end of the build the metrics are written as a JSON report in the root
+ * project build directory, and added as custom values to the build scan, if there is one.
+ */
+public abstract class BesuPluginMetricsService
+    implements BuildService<BesuPluginMetricsService.Params>, BesuPluginMetrics, AutoCloseable {
+  static final String SERVICE_NAME = "besuPluginMetrics";
+  static final String METRICS_REPORT_RELATIVE_PATH = "reports/besu-plugin/besu-plugin-metrics.json";
+
+  static final String DOWNLOAD = "besuArtifactsDownload";
+  static final String BOM_PARSE = "bomParse";
+  static final String CATALOG_EXTRACTION = "catalogExtraction";
+  static final String MERGE = "merge";
+  static final String DEPENDENCY_REWRITE = "dependencyRewrite";
+  static final String CANDIDATE_SELECTION = "candidateSelection";
+  static final String COMPONENT_SELECTION = "componentSelection";
+  static final String RUNTIME_ARTIFACT_WALK = "runtimeArtifactWalk";
+  static final String PACKAGE_SCAN = "packageScan";
+  static final String CLASS_SCAN = "classScan";
+  static final String SHRINK = "shrink";
+
+  private static final Logger LOG = Logging.getLogger(BesuPluginMetricsService.class);
+
+  public interface Params extends BuildServiceParameters {
+    RegularFileProperty getReportFile();
+  }
+
+  static Provider<BesuPluginMetricsService> register(final Project project) {
+    boolean firstRegistration =
+        project.getGradle().getSharedServices().getRegistrations().findByName(SERVICE_NAME) == null;
+    Provider<BesuPluginMetricsService> metrics =
+        project
+            .getGradle()
+            .getSharedServices()
+            .registerIfAbsent(
+                SERVICE_NAME,
+                BesuPluginMetricsService.class,
+                spec ->
+                    spec.getParameters()
+                        .getReportFile()
+                        .set(
+                            project
+                                .getRootProject()
+                                .getLayout()
+                                .getBuildDirectory()
+                                .file(METRICS_REPORT_RELATIVE_PATH)));
+    if (firstRegistration) {
+      addBuildScanValues(project.getRootProject(), metrics);
+    }
+    return metrics;
+  }
+
+  private final Map<String, Phase> phases = new ConcurrentHashMap<>();
+
+  @Override
+  public void addDuration(final String phase, final long nanos) {
+    Phase metrics = phase(phase);
+    metrics.count.increment();
+    metrics.nanos.add(nanos);
+  }
+
+  @Override
+  public void count(final String phase, final String counter, final long amount) {
+    phase(phase).counters.computeIfAbsent(counter, name -> new LongAdder()).add(amount);
+  }
+
+  private Phase phase(final String phase) {
+    return phases.computeIfAbsent(phase, name -> new Phase());
+  }
+
+  /** Flat, sorted, view of the metrics, as used for the build scan custom values. */
+  Map<String, String> customValues() {
+    Map<String, String> values = new TreeMap<>();
+    phases.forEach(
+        (name, phase) -> {
+          values.put("besu." + name + ".count", String.valueOf(phase.count.sum()));
+          values.put("besu." + name + ".millis", String.valueOf(phase.millis()));
+          phase.counters.forEach(
+              (counter, value) ->
+                  values.put("besu." + name + "." + counter, String.valueOf(value.sum())));
+        });
+    return values;
+  }
+
+  /**
+   * Writes the phases measured by this instance to the report, replacing their previous entries and
+   * keeping the other ones. With the configuration cache, the phases that run while resolving
+   * dependencies at configuration time use another instance of this service, and are not run at all
+   * when the cache entry is reused, so each entry has the time it was recorded at.
+   */
+  @Override
+  public void close() {
+    if (phases.isEmpty()) {
+      return;
+    }
+
+    File reportFile = getParameters().getReportFile().get().getAsFile();
+    Map<String, Object> report = new TreeMap<>(readPhases(reportFile));
+    String recordedAt = Instant.now().toString();
+    phases.forEach(
+        (name, phase) -> {
+          Map<String, Long> counters = new TreeMap<>();
+          phase.counters.forEach((counter, value) -> counters.put(counter, value.sum()));
+          report.put(
+              name,
+              new TreeMap<>(
+                  Map.of(
+                      "count",
+                      phase.count.sum(),
+                      "durationMillis",
+                      phase.millis(),
+                      "counters",
+                      counters,
+                      "recordedAt",
+                      recordedAt)));
+        });
+
+    String json = new JsonBuilder(Map.of("phases", report)).toPrettyString();
+    try {
+      Files.createDirectories(reportFile.toPath().getParent());
+      Files.writeString(reportFile.toPath(), json, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write Besu plugin metrics report " + reportFile, e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> readPhases(final File reportFile) {
+    if (!reportFile.isFile()) {
+      return Map.of();
+    }
+    try {
+      Object report =
+          new JsonSlurper()
+              .parseText(Files.readString(reportFile.toPath(), StandardCharsets.UTF_8));
+      if (report instanceof Map<?, ?> map && map.get("phases") instanceof Map<?, ?> phases) {
+        return (Map<String, Object>) phases;
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.info("Ignoring invalid Besu plugin metrics report {}", reportFile, e);
+    }
+    return Map.of();
+  }
+
+  /**
+   * The Develocity plugin is optional, and not a dependency of this plugin, so its build scan
+   * extension is looked up by name and used through reflection.
+   */
+  private static void addBuildScanValues(
+      final Project rootProject, final Provider<BesuPluginMetricsService> metrics) {
+    try {
+      Object buildScan = rootProject.getExtensions().findByName("buildScan");
+      Object develocity = rootProject.getExtensions().findByName("develocity");
+      if (develocity != null) {
+        buildScan = develocity.getClass().getMethod("getBuildScan").invoke(develocity);
+      }
+      if (buildScan == null) {
+        return;
+      }
+
+      Object scan = buildScan;
+      Action<Object> addValues =
+          buildResult -> {
+            try {
+              Method value = scan.getClass().getMethod("value", String.class, String.class);
+              for (Map.Entry<String, String> metric : metrics.get().customValues().entrySet()) {
+                value.invoke(scan, metric.getKey(), metric.getValue());
+              }
+            } catch (ReflectiveOperationException e) {
+              LOG.info("Unable to add the Besu plugin metrics to the build scan", e);
+            }
+          };
+      scan.getClass().getMethod("buildFinished", Action.class).invoke(scan, addValues);
+    } catch (ReflectiveOperationException e) {
+      LOG.info("Unable to add the Besu plugin metrics to the build scan", e);
+    }
+  }
+
+  private static final class Phase {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private double millis() {
+      return Math.round(nanos.sum() / 1_000.0) / 1_000.0;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+
+/**
+ * Hash index of the dependencies provided by Besu, by group and then by name, so that checking if a
+ * component is provided by Besu is a constant time lookup that does not need to build its {@code
+ * group:name} coordinates, and that stops at the group for the ones Besu does not ship.
+ */
+final class BesuProvidedDependencyIndex {
+  private final Map<String, Map<String, BesuProvidedDependency>> dependenciesByGroup;
+
+  BesuProvidedDependencyIndex(final List<BesuProvidedDependency> besuProvidedDependencies) {
+    Map<String, Map<String, BesuProvidedDependency>> index = new HashMap<>();
+    for (BesuProvidedDependency dependency : besuProvidedDependencies) {
+      index
+          .computeIfAbsent(dependency.group(), group -> new HashMap<>())
+          .putIfAbsent(dependency.name(), dependency);
+    }
+    index.replaceAll((group, dependenciesByName) -> Map.copyOf(dependenciesByName));
+    this.dependenciesByGroup = Map.copyOf(index);
+  }
+
+  /** Returns the Besu provided dependency with the given coordinates, or null if none. */
+  BesuProvidedDependency find(final String group, final String name) {
+    Map<String, BesuProvidedDependency> dependenciesByName = dependenciesByGroup.get(group);
+    return dependenciesByName == null ? null : dependenciesByName.get(name);
+  }
+}
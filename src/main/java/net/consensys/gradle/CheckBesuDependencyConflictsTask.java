@@ -0,0 +1,279 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Checks the runtime dependencies of the project against the dependencies provided by Besu, and
+ * reports:
+ *
+ * <ul>
+ *   <li>Besu provided dependencies resolved to a different version than the one Besu ships,
+ *   <li>plugin only dependencies that are the same artifact as a Besu provided one, under other
+ *       coordinates: an artifact with the name and version of a Besu provided one, in another
+ *       group, is only reported when both jars have the same content, since different projects can
+ *       publish artifacts with the same name,
+ *   <li>dependencies requested with old Besu coordinates,
+ *   <li>old Besu coordinates that are still part of the graph, while they should be excluded.
+ * </ul>
+ *
+ * <p>The Besu dependency model is shared by all the projects of the build, and the dependency graph
+ * is walked once, so the check is linear in the size of the graph. Depending on {@link
+ * BesuPluginLibraryExtension#getFailOnDependencyConflicts()}, the conflicts fail the build, or are
+ * only reported.
+ */
+@CacheableTask
+public abstract class CheckBesuDependencyConflictsTask extends DefaultTask {
+  static final String TASK_NAME = "checkBesuDependencyConflicts";
+  static final String REPORT_RELATIVE_PATH = "reports/besu-plugin/dependency-conflicts.txt";
+
+  @Input
+  public abstract Property<String> getBesuVersion();
+
+  @Input
+  public abstract Property<String> getBesuRepo();
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getBesuDependencyModelFile();
+
+  @Input
+  public abstract Property<ResolvedComponentResult> getRuntimeClasspathRootComponent();
+
+  /**
+   * The jars of the external modules of the runtime and compile classpaths, whose content tells
+   * whether two artifacts under different coordinates are the same.
+   */
+  @Classpath
+  public abstract ConfigurableFileCollection getModuleArtifacts();
+
+  /**
+   * The identifiers of the jars of {@link #getModuleArtifacts()}, in the order of {@link
+   * #getModuleArtifactFiles()}. The resolved artifact results themselves cannot be stored in the
+   * configuration cache.
+   */
+  @Internal
+  public abstract ListProperty<ComponentArtifactIdentifier> getModuleArtifactIdentifiers();
+
+  @Internal
+  public abstract ListProperty<File> getModuleArtifactFiles();
+
+  @Input
+  public abstract Property<Boolean> getFailOnConflicts();
+
+  @Internal
+  abstract Property<BesuDependencyModelService> getModelService();
+
+  @OutputFile
+  public abstract RegularFileProperty getReportFile();
+
+  @TaskAction
+  public void check() {
+    BesuDependencyModel model = getBesuDependencyModel();
+    BesuProvidedDependencyIndex catalogIndex = model.catalogIndex();
+    Map<String, String> managedVersions = model.managedVersionsByCoordinates();
+    Map<String, BesuProvidedDependency> besuArtifacts = new HashMap<>();
+    for (BesuProvidedDependency dependency : model.mergedDependencies()) {
+      besuArtifacts.putIfAbsent(dependency.name() + ":" + dependency.version(), dependency);
+    }
+    Map<String, File> moduleArtifactFiles = moduleArtifactFiles();
+
+    List<String> versionSkews = new ArrayList<>();
+    List<String> duplicateCoordinates = new ArrayList<>();
+    List<String> oldCoordinates = new ArrayList<>();
+    List<String> notExcluded = new ArrayList<>();
+
+    ResolvedComponentResult root = getRuntimeClasspathRootComponent().get();
+    Set<ResolvedComponentResult> visited = new HashSet<>();
+    Deque<ResolvedComponentResult> pending = new ArrayDeque<>();
+    visited.add(root);
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      ResolvedComponentResult component = pending.pop();
+      for (DependencyResult dependencyResult : component.getDependencies()) {
+        ComponentSelector requested = dependencyResult.getRequested();
+        if (requested instanceof ModuleComponentSelector module) {
+          String newCoordinates =
+              BesuOld2NewCoordinatesMapping.getNewCoordinates(
+                  module.getGroup(), module.getModule());
+          if (newCoordinates != null) {
+            oldCoordinates.add(
+                "%s:%s requested by %s, use %s instead"
+                    .formatted(
+                        module.getGroup(),
+                        module.getModule(),
+                        component.getId().getDisplayName(),
+                        newCoordinates));
+          }
+        }
+        if (dependencyResult instanceof ResolvedDependencyResult resolvedDependency
+            && visited.add(resolvedDependency.getSelected())) {
+          pending.push(resolvedDependency.getSelected());
+        }
+      }
+
+      if (component != root && component.getId() instanceof ModuleComponentIdentifier) {
+        ModuleVersionIdentifier moduleVersion = component.getModuleVersion();
+        String group = moduleVersion.getGroup();
+        String name = moduleVersion.getName();
+        String version = moduleVersion.getVersion();
+        BesuProvidedDependency catalogued = catalogIndex.find(group, name);
+        String besuVersion =
+            catalogued != null ? catalogued.version() : managedVersions.get(group + ":" + name);
+        if (BesuOld2NewCoordinatesMapping.isOldCoordinate(group, name)) {
+          notExcluded.add(moduleVersion.toString());
+        } else if (besuVersion != null) {
+          if (!besuVersion.equals(version)) {
+            versionSkews.add("%s, Besu provides %s".formatted(moduleVersion, besuVersion));
+          }
+        } else {
+          BesuProvidedDependency sameArtifact = besuArtifacts.get(name + ":" + version);
+          if (sameArtifact != null
+              && sameContent(
+                  moduleArtifactFiles.get(moduleVersion.toString()),
+                  moduleArtifactFiles.get(
+                      sameArtifact.coordinates() + ":" + sameArtifact.version()))) {
+            duplicateCoordinates.add(
+                "%s, same artifact as Besu provided %s"
+                    .formatted(moduleVersion, sameArtifact.notation()));
+          }
+        }
+      }
+    }
+
+    List<String> report = new ArrayList<>();
+    addSection(report, "Version skews", versionSkews);
+    addSection(report, "Duplicate coordinates", duplicateCoordinates);
+    addSection(report, "Old Besu coordinates", oldCoordinates);
+    addSection(report, "Old Besu coordinates not excluded", notExcluded);
+
+    File reportFile = getReportFile().get().getAsFile();
+    try {
+      Files.write(reportFile.toPath(), report, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Unable to write Besu dependency conflicts report " + reportFile, e);
+    }
+
+    String summary =
+        ("%d version skews, %d duplicate coordinates, %d old coordinates, %d not excluded, out"
+                + " of %d runtime components, see %s")
+            .formatted(
+                versionSkews.size(),
+                duplicateCoordinates.size(),
+                oldCoordinates.size(),
+                notExcluded.size(),
+                visited.size() - 1,
+                reportFile);
+    int conflicts =
+        versionSkews.size()
+            + duplicateCoordinates.size()
+            + oldCoordinates.size()
+            + notExcluded.size();
+    if (conflicts > 0 && getFailOnConflicts().get()) {
+      throw new IllegalStateException("Found Besu dependency conflicts: " + summary);
+    }
+    getLogger().lifecycle("Besu dependency conflicts: {}", summary);
+  }
+
+  /** The jars of the external modules, by group:name:version. */
+  private Map<String, File> moduleArtifactFiles() {
+    List<ComponentArtifactIdentifier> identifiers = getModuleArtifactIdentifiers().get();
+    List<File> files = getModuleArtifactFiles().get();
+    Map<String, File> filesByModule = new HashMap<>();
+    for (int i = 0; i < identifiers.size(); i++) {
+      if (identifiers.get(i).getComponentIdentifier() instanceof ModuleComponentIdentifier module
+          && files.get(i).getName().endsWith(".jar")) {
+        filesByModule.putIfAbsent(
+            module.getGroup() + ":" + module.getModule() + ":" + module.getVersion(), files.get(i));
+      }
+    }
+    return filesByModule;
+  }
+
+  /** Whether both jars are known and have the same content. */
+  private static boolean sameContent(final File jar, final File otherJar) {
+    if (jar == null || otherJar == null) {
+      return false;
+    }
+    try {
+      return jar.length() == otherJar.length()
+          && ArtifactHashes.sha256(jar.toPath()).equals(ArtifactHashes.sha256(otherJar.toPath()));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to hash " + jar + " and " + otherJar, e);
+    }
+  }
+
+  private BesuDependencyModel getBesuDependencyModel() {
+    String besuVersion = getBesuVersion().get();
+    String besuRepo = getBesuRepo().get();
+    File modelFile = getBesuDependencyModelFile().get().getAsFile();
+    return getModelService()
+        .get()
+        .getModel(
+            besuVersion,
+            besuRepo,
+            () -> {
+              BesuDependencyModel model =
+                  BesuPluginLibrary.readBesuDependencyModel(modelFile, besuVersion, besuRepo);
+              if (model == null) {
+                throw new IllegalStateException("Invalid Besu dependency model file " + modelFile);
+              }
+              return model;
+            });
+  }
+
+  private static void addSection(
+      final List<String> report, final String title, final List<String> entries) {
+    report.add("%s (%d)".formatted(title, entries.size()));
+    entries.stream().sorted().forEach(entry -> report.add("  " + entry));
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Checks that the plugin only runtime artifacts do not contain the same classes as each other, or
+ * as the artifacts provided by Besu, since at runtime only one of them is loaded. Depending on
+ * {@link BesuPluginLibraryExtension#getFailOnDuplicateClasses()}, the duplicates fail the build, or
+ * are only reported.
+ *
+ * <p>The jars are listed in parallel, reading only their central directory, and their classes are
+ * cached by content hash, so a jar is only listed again when it changed. The duplicates are written
+ * to a report, that is the output of the task, so the task is cacheable like {@link
+ * IndexPluginPackagesTask}: an up to date or cached run does not log the warning again, but keeps
+ * the report. Duplicates that fail the build are not cached, so they fail every run.
+ */
+@CacheableTask
+public abstract class CheckDuplicateClassesTask extends DefaultTask {
+  static final String TASK_NAME = "checkDuplicateClasses";
+  static final String REPORT_RELATIVE_PATH = "reports/besu-plugin/duplicate-classes.txt";
+  static final String CLASS_ENTRIES_CACHE_RELATIVE_PATH = "besu-plugin/class-entries";
+
+  @Classpath
+  public abstract ConfigurableFileCollection getPluginOnlyRuntimeArtifacts();
+
+  @Classpath
+  public abstract ConfigurableFileCollection getBesuProvidedArtifacts();
+
+  @Input
+  public abstract Property<Boolean> getFailOnDuplicateClasses();
+
+  @Internal
+  abstract Property<BesuPluginMetricsService> getMetricsService();
+
+  /** The classes of the jars, and the memoized hashes of the jars, as of the last run. */
+  @LocalState
+  public abstract DirectoryProperty getClassEntriesCache();
+
+  @OutputFile
+  public abstract RegularFileProperty getReportFile();
+
+  @TaskAction
+  public void check() {
+    Path cacheDirectory = getClassEntriesCache().get().getAsFile().toPath();
+    Path hashesFile = cacheDirectory.resolve("artifact-hashes.txt");
+    Path entriesDirectory = cacheDirectory.resolve("entries");
+    try {
+      Files.createDirectories(entriesDirectory);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to create class entries cache " + entriesDirectory, e);
+    }
+    ArtifactHashes hashes = ArtifactHashes.load(hashesFile);
+
+    List<File> pluginOnlyArtifacts = jars(getPluginOnlyRuntimeArtifacts());
+    List<File> besuProvidedArtifacts = jars(getBesuProvidedArtifacts());
+    Map<File, List<String>> classEntries =
+        getMetricsService()
+            .get()
+            .time(
+                BesuPluginMetricsService.CLASS_SCAN,
+                () ->
+                    Stream.concat(pluginOnlyArtifacts.stream(), besuProvidedArtifacts.stream())
+                        .distinct()
+                        .parallel()
+                        .collect(
+                            Collectors.toMap(
+                                Function.identity(),
+                                jar ->
+                                    JarContents.classEntries(
+                                        jar.toPath(), hashes, entriesDirectory))));
+    hashes.save(hashesFile);
+    pruneEntries(entriesDirectory, classEntries.keySet(), hashes);
+
+    Map<String, String> besuJarsByClass = new HashMap<>();
+    for (File jar : besuProvidedArtifacts) {
+      classEntries.get(jar).forEach(entry -> besuJarsByClass.putIfAbsent(entry, jar.getName()));
+    }
+
+    // Duplicates grouped by the pair of jars that contain them
+    Map<String, SortedSet<String>> duplicatesInPlugin = new TreeMap<>();
+    Map<String, SortedSet<String>> duplicatesWithBesu = new TreeMap<>();
+    Map<String, String> pluginJarsByClass = new HashMap<>();
+    for (File jar : pluginOnlyArtifacts) {
+      for (String entry : classEntries.get(jar)) {
+        String className = className(entry);
+        String besuJar = besuJarsByClass.get(entry);
+        if (besuJar != null) {
+          duplicatesWithBesu
+              .computeIfAbsent(
+                  "%s and Besu provided %s".formatted(jar.getName(), besuJar),
+                  pair -> new TreeSet<>())
+              .add(className);
+        }
+        String pluginJar = pluginJarsByClass.putIfAbsent(entry, jar.getName());
+        if (pluginJar != null && !pluginJar.equals(jar.getName())) {
+          duplicatesInPlugin
+              .computeIfAbsent(
+                  "%s and %s".formatted(pluginJar, jar.getName()), pair -> new TreeSet<>())
+              .add(className);
+        }
+      }
+    }
+
+    List<String> report = new ArrayList<>();
+    int duplicatesInPluginCount = addSection(report, "Plugin only jars", duplicatesInPlugin);
+    int duplicatesWithBesuCount =
+        addSection(report, "Plugin only and Besu provided jars", duplicatesWithBesu);
+    File reportFile = getReportFile().get().getAsFile();
+    try {
+      Files.write(reportFile.toPath(), report, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write duplicate classes report " + reportFile, e);
+    }
+
+    String summary =
+        ("%d duplicate classes between plugin only jars, %d between plugin only and Besu"
+                + " provided jars, see %s")
+            .formatted(duplicatesInPluginCount, duplicatesWithBesuCount, reportFile);
+    if (duplicatesInPluginCount + duplicatesWithBesuCount == 0) {
+      getLogger().lifecycle("No duplicate classes found in {} jars", classEntries.size());
+    } else if (getFailOnDuplicateClasses().get()) {
+      throw new IllegalStateException("Found " + summary);
+    } else {
+      getLogger().warn("Found {}", summary);
+    }
+  }
+
+  private static List<File> jars(final ConfigurableFileCollection files) {
+    return files.getFiles().stream().filter(File::isFile).toList();
+  }
+
+  /** Removes the cached classes of the jars that are no longer used. */
+  private static void pruneEntries(
+      final Path entriesDirectory, final Set<File> jars, final ArtifactHashes hashes) {
+    Set<String> used =
+        jars.stream().map(jar -> hashes.hash(jar.toPath()).sha256()).collect(Collectors.toSet());
+    try (Stream<Path> files = Files.list(entriesDirectory)) {
+      for (Path file : files.toList()) {
+        if (!used.contains(file.getFileName().toString())) {
+          Files.delete(file);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to prune class entries cache " + entriesDirectory, e);
+    }
+  }
+
+  private static String className(final String classEntry) {
+    return classEntry.substring(0, classEntry.length() - ".class".length()).replace('/', '.');
+  }
+
+  private static int addSection(
+      final List<String> report,
+      final String title,
+      final Map<String, SortedSet<String>> duplicatesByJars) {
+    int count = duplicatesByJars.values().stream().mapToInt(Set::size).sum();
+    report.add("%s (%d)".formatted(title, count));
+    duplicatesByJars.forEach(
+        (jars, classNames) -> {
+          report.add("  %s (%d)".formatted(jars, classNames.size()));
+          classNames.forEach(className -> report.add("    " + className));
+        });
+    return count;
+  }
+}
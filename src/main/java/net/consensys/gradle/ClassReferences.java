@@ -0,0 +1,96 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lists the classes a class file refers to, from its constant pool, without loading it.
+ *
+ * <p>The result is conservative: besides the class constants, every descriptor or signature like
+ * string of the constant pool is considered a reference, as is every string that looks like a
+ * qualified class name, to also cover the classes loaded by name.
+ */
+final class ClassReferences {
+  private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+  private static final Pattern DESCRIPTOR_REFERENCE = Pattern.compile("L([^;()<>\\[\\s.]+)[;<]");
+  private static final Pattern QUALIFIED_CLASS_NAME =
+      Pattern.compile("[\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}.]*");
+
+  private ClassReferences() {}
+
+  /** Returns the internal names, like {@code java/lang/Object}, of the referenced classes. */
+  static Set<String> referencedClassNames(final byte[] classFile) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+    if (in.readInt() != CLASS_FILE_MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    in.readUnsignedShort(); // minor version
+    in.readUnsignedShort(); // major version
+
+    int constantPoolCount = in.readUnsignedShort();
+    String[] utf8 = new String[constantPoolCount];
+    int[] classNameIndexes = new int[constantPoolCount];
+    int classCount = 0;
+    for (int i = 1; i < constantPoolCount; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 1 -> utf8[i] = in.readUTF();
+        case 7 -> classNameIndexes[classCount++] = in.readUnsignedShort();
+        case 8, 16, 19, 20 -> in.skipBytes(2);
+        case 15 -> in.skipBytes(3);
+        case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+        case 5, 6 -> {
+          // Long and double constants take two entries
+          in.skipBytes(8);
+          i++;
+        }
+        default -> throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+
+    Set<String> references = new HashSet<>();
+    for (int i = 0; i < classCount; i++) {
+      String className = utf8[classNameIndexes[i]];
+      if (className.startsWith("[")) {
+        addDescriptorReferences(className, references);
+      } else {
+        references.add(className);
+      }
+    }
+    for (String value : utf8) {
+      if (value != null) {
+        addDescriptorReferences(value, references);
+        if (value.indexOf('.') > 0 && QUALIFIED_CLASS_NAME.matcher(value).matches()) {
+          references.add(value.replace('.', '/'));
+        }
+      }
+    }
+    return references;
+  }
+
+  private static void addDescriptorReferences(final String value, final Set<String> references) {
+    Matcher matcher = DESCRIPTOR_REFERENCE.matcher(value);
+    while (matcher.find()) {
+      references.add(matcher.group(1));
+    }
+  }
+}
@@ -18,172 +18,306 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.stream.Collectors;
 
 import groovy.json.JsonBuilder;
-import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+import net.consensys.gradle.ArtifactHashes.ArtifactHash;
 import org.gradle.api.DefaultTask;
-import org.gradle.api.artifacts.Configuration;
-import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 
 public abstract class CollectPluginOnlyRuntimeArtifactsTask extends DefaultTask {
   static final String TASK_NAME = "collectPluginOnlyRuntimeArtifacts";
-  static final String BESU_PLUGIN_ONLY_RUNTIME_ARTIFACTS =
-      CollectPluginOnlyRuntimeArtifactsTask.class.getName() + ".pluginOnlyRuntimeArtifacts";
   static final String PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH =
       "reports/dependencies/plugin-artifacts-catalog.json";
+  static final String BINARY_PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH =
+      "reports/dependencies/plugin-artifacts-catalog.bin";
+  static final String PLUGIN_ONLY_RUNTIME_ARTIFACTS_RELATIVE_PATH =
+      "reports/dependencies/plugin-only-runtime-artifacts.txt";
+  static final String ARTIFACT_HASHES_RELATIVE_PATH = "besu-plugin/artifact-hashes.txt";
 
+  /** The files of the plugin only runtime artifacts, the ones Besu provides are not resolved. */
   @Classpath
   public abstract ConfigurableFileCollection getRuntimeArtifacts();
 
+  @Input
+  public abstract Property<String> getBesuVersion();
+
+  /**
+   * The model of the dependencies provided by Besu, that selects the plugin only runtime artifacts,
+   * so that a change of what Besu provides invalidates the catalog.
+   */
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getBesuDependencyModelFile();
+
+  @Internal
+  public abstract Property<ResolvedComponentResult> getRuntimeClasspathRootComponent();
+
+  /**
+   * The identifiers of the plugin only runtime artifacts, in the order of {@link
+   * #getPluginOnlyRuntimeArtifactFiles()}. The resolved artifact results themselves cannot be
+   * stored in the configuration cache.
+   */
+  @Internal
+  public abstract ListProperty<ComponentArtifactIdentifier>
+      getPluginOnlyRuntimeArtifactIdentifiers();
+
+  @Internal
+  public abstract ListProperty<File> getPluginOnlyRuntimeArtifactFiles();
+
+  /**
+   * The identifiers of the plugin only runtime artifacts, that are part of the catalog, but not of
+   * the classpath normalization of {@link #getRuntimeArtifacts()}.
+   */
+  @Input
+  public Provider<List<String>> getPluginOnlyRuntimeArtifactIds() {
+    return getPluginOnlyRuntimeArtifactIdentifiers()
+        .map(
+            identifiers ->
+                identifiers.stream()
+                    .map(ComponentArtifactIdentifier::getDisplayName)
+                    .sorted()
+                    .toList());
+  }
+
+  /**
+   * The shrunk plugin only runtime artifacts, that replace the ones with the same name in the
+   * catalog and in the distribution, empty unless shrinking is enabled.
+   */
+  @InputFiles
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  public abstract ConfigurableFileCollection getShrunkRuntimeArtifacts();
+
+  @Internal
+  abstract Property<BesuPluginMetricsService> getMetricsService();
+
+  @OutputFile
+  public abstract RegularFileProperty getArtifactsCatalog();
+
+  /** The compact binary form of the catalog, only generated when set. */
+  @OutputFile
+  @Optional
+  public abstract RegularFileProperty getBinaryArtifactsCatalog();
+
+  /** The memoized hashes of the plugin only runtime artifacts, as of the last run. */
+  @LocalState
+  public abstract RegularFileProperty getArtifactHashesFile();
+
+  @OutputFile
+  public abstract RegularFileProperty getPluginOnlyRuntimeArtifactsList();
+
   @TaskAction
   public void collectRuntimeArtifacts() {
-    Configuration runtimeClasspath = getProject().getConfigurations().getByName("runtimeClasspath");
-    List<BesuProvidedDependency> besuProvidedDependencies =
-        (List<BesuProvidedDependency>)
-            getProject()
-                .getExtensions()
-                .getExtraProperties()
-                .get(BesuPluginLibrary.BESU_PROVIDED_DEPENDENCIES);
-
-    Set<ResolvedDependency> alreadyEvaluated = new HashSet<>();
-    Map<File, ResolvedDependency> pluginOnlyRuntimeArtifacts = new HashMap<>();
-    getLogger().lifecycle("Collecting pluginOnlyRuntimeArtifacts");
-    Set<ResolvedDependency> firstLevelDeps =
-        runtimeClasspath.getResolvedConfiguration().getFirstLevelModuleDependencies();
-
-    // Process first-level dependencies
-    for (ResolvedDependency dependency : firstLevelDeps) {
-      alreadyEvaluated.add(dependency);
-      getLogger().lifecycle("Processing {}", dependency.getChildren());
-      if (!providedByBesu(besuProvidedDependencies, dependency)) {
-        getLogger()
-            .lifecycle(
-                "Plugin only runtime dependency {}, artifacts {}",
-                dependency,
-                dependency.getModuleArtifacts());
-        dependency
-            .getModuleArtifacts()
-            .forEach(artifact -> pluginOnlyRuntimeArtifacts.put(artifact.getFile(), dependency));
-      }
+    BesuPluginMetricsService metrics = getMetricsService().get();
+    Map<ComponentIdentifier, ModuleVersionIdentifier> moduleVersions =
+        metrics.time(
+            BesuPluginMetricsService.RUNTIME_ARTIFACT_WALK,
+            () -> collectModuleVersions(getRuntimeClasspathRootComponent().get()));
 
-      processTransitiveDependencies(
-          besuProvidedDependencies, dependency, pluginOnlyRuntimeArtifacts, alreadyEvaluated);
+    Map<String, File> shrunkRuntimeArtifacts = new HashMap<>();
+    for (File shrunkArtifact : getShrunkRuntimeArtifacts()) {
+      shrunkRuntimeArtifacts.put(shrunkArtifact.getName(), shrunkArtifact);
+    }
+    Map<File, ModuleVersionIdentifier> pluginOnlyRuntimeArtifacts = new HashMap<>();
+    List<ComponentArtifactIdentifier> identifiers = getPluginOnlyRuntimeArtifactIdentifiers().get();
+    List<File> files = getPluginOnlyRuntimeArtifactFiles().get();
+    for (int i = 0; i < identifiers.size(); i++) {
+      ComponentArtifactIdentifier identifier = identifiers.get(i);
+      File file = files.get(i);
+      ModuleVersionIdentifier moduleVersion =
+          moduleVersions.get(identifier.getComponentIdentifier());
+      if (moduleVersion == null) {
+        throw new IllegalStateException(
+            "Runtime artifact " + identifier + " has no component in the dependency graph");
+      }
+      pluginOnlyRuntimeArtifacts.put(
+          shrunkRuntimeArtifacts.getOrDefault(file.getName(), file), moduleVersion);
     }
 
+    metrics.count(
+        BesuPluginMetricsService.RUNTIME_ARTIFACT_WALK, "visitedNodes", moduleVersions.size());
+    metrics.count(
+        BesuPluginMetricsService.RUNTIME_ARTIFACT_WALK,
+        "pluginOnlyArtifacts",
+        pluginOnlyRuntimeArtifacts.size());
     getLogger()
-        .lifecycle("Collected pluginOnlyRuntimeClasspath artifacts {}", pluginOnlyRuntimeArtifacts);
+        .lifecycle(
+            "Collected {} plugin only runtime artifacts, out of {} runtime components",
+            pluginOnlyRuntimeArtifacts.size(),
+            moduleVersions.size());
 
     generateArtifactsCatalog(pluginOnlyRuntimeArtifacts);
-
-    getProject()
-        .getExtensions()
-        .getExtraProperties()
-        .set(BESU_PLUGIN_ONLY_RUNTIME_ARTIFACTS, Map.copyOf(pluginOnlyRuntimeArtifacts));
+    writePluginOnlyRuntimeArtifactsList(pluginOnlyRuntimeArtifacts);
   }
 
-  private void processTransitiveDependencies(
-      List<BesuProvidedDependency> besuProvidedDependencies,
-      ResolvedDependency dependency,
-      Map<File, ResolvedDependency> pluginOnlyRuntimeArtifacts,
-      Set<ResolvedDependency> alreadyEvaluated) {
-    for (ResolvedDependency child : dependency.getChildren()) {
-      if (!alreadyEvaluated.contains(child)) {
-        getLogger().lifecycle("Processing {}", child);
-        alreadyEvaluated.add(child);
-        if (!providedByBesu(besuProvidedDependencies, child)) {
-          getLogger()
-              .lifecycle(
-                  "Plugin only runtime dependency {}, artifacts {}",
-                  child,
-                  child.getModuleArtifacts());
-          child
-              .getModuleArtifacts()
-              .forEach(artifact -> pluginOnlyRuntimeArtifacts.put(artifact.getFile(), child));
+  /**
+   * Walks the dependency graph from the root component, with an explicit stack so that deep graphs
+   * cannot overflow the call stack, and returns the module version of every component reached.
+   */
+  private static Map<ComponentIdentifier, ModuleVersionIdentifier> collectModuleVersions(
+      final ResolvedComponentResult root) {
+    Map<ComponentIdentifier, ModuleVersionIdentifier> moduleVersions = new HashMap<>();
+    Deque<ResolvedComponentResult> pending = new ArrayDeque<>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      ResolvedComponentResult component = pending.pop();
+      for (DependencyResult dependencyResult : component.getDependencies()) {
+        if (dependencyResult instanceof ResolvedDependencyResult resolvedDependency) {
+          ResolvedComponentResult child = resolvedDependency.getSelected();
+          if (!moduleVersions.containsKey(child.getId())) {
+            moduleVersions.put(child.getId(), child.getModuleVersion());
+            pending.push(child);
+          }
         }
-        // Recursively process children
-        processTransitiveDependencies(
-            besuProvidedDependencies, child, pluginOnlyRuntimeArtifacts, alreadyEvaluated);
       }
     }
+    return moduleVersions;
   }
 
-  private boolean providedByBesu(
-      List<BesuProvidedDependency> besuProvidedDependencies, ResolvedDependency dependency) {
-    String coordinate = dependency.getModuleGroup() + ":" + dependency.getModuleName();
-
-    if (BesuOld2NewCoordinatesMapping.getOld2NewCoordinates().containsKey(coordinate)) {
-      getLogger().lifecycle("Excluding old Besu dependency {}", dependency);
-      return true;
-    }
-
-    var maybeBesuProvided =
-        besuProvidedDependencies.stream()
-            .filter(
-                providedDependency ->
-                    coordinate.equals(
-                        providedDependency.dependency().getGroup()
-                            + ":"
-                            + providedDependency.dependency().getName()))
-            .findAny();
-
-    if (maybeBesuProvided.isPresent()) {
-      getLogger()
-          .lifecycle(
-              "Excluding runtime dependency with coordinates {}({}) is already provided by Besu: '{}'",
-              dependency,
-              coordinate,
-              maybeBesuProvided.get());
-      return true;
+  /**
+   * Returns whether the component must be distributed with the plugin, because Besu does not
+   * provide it. Used as the component filter of the runtime classpath artifact view, so the
+   * artifacts of the components provided by Besu are never resolved.
+   */
+  static boolean isPluginOnly(
+      final BesuProvidedDependencyIndex besuProvidedDependencies,
+      final ComponentIdentifier component) {
+    if (component instanceof ModuleComponentIdentifier module) {
+      return !BesuOld2NewCoordinatesMapping.isOldCoordinate(module.getGroup(), module.getModule())
+          && besuProvidedDependencies.find(module.getGroup(), module.getModule()) == null;
     }
-
-    return false;
+    return true;
   }
 
   private void generateArtifactsCatalog(
-      final Map<File, ResolvedDependency> pluginOnlyRuntimeArtifacts) {
-    List<Map<String, String>> jsonDependencies =
+      final Map<File, ModuleVersionIdentifier> pluginOnlyRuntimeArtifacts) {
+    Path hashesFile = getArtifactHashesFile().get().getAsFile().toPath();
+    ArtifactHashes artifactHashes = ArtifactHashes.load(hashesFile);
+    Map<File, ArtifactHash> hashes =
+        pluginOnlyRuntimeArtifacts.keySet().parallelStream()
+            .collect(
+                Collectors.toMap(
+                    artifact -> artifact, artifact -> artifactHashes.hash(artifact.toPath())));
+    artifactHashes.save(hashesFile);
+
+    // Sorted, with keys in a fixed order, so that the catalog is the same from one build to the
+    // next
+    List<Map.Entry<File, ModuleVersionIdentifier>> sortedArtifacts =
         pluginOnlyRuntimeArtifacts.entrySet().stream()
+            .sorted(
+                Comparator.comparing(
+                        (Map.Entry<File, ModuleVersionIdentifier> e) -> e.getValue().getGroup())
+                    .thenComparing(e -> e.getValue().getName())
+                    .thenComparing(e -> e.getKey().getName()))
+            .toList();
+    List<Map<String, Object>> jsonDependencies =
+        sortedArtifacts.stream()
             .map(
-                e ->
-                    Map.of(
-                        "group", e.getValue().getModuleGroup(),
-                        "name", e.getValue().getModuleName(),
-                        "version", e.getValue().getModuleVersion(),
-                        "filename", e.getKey().getName()))
+                e -> {
+                  Map<String, Object> dependency = new LinkedHashMap<>();
+                  dependency.put("group", e.getValue().getGroup());
+                  dependency.put("name", e.getValue().getName());
+                  dependency.put("version", e.getValue().getVersion());
+                  dependency.put("filename", e.getKey().getName());
+                  dependency.put("size", hashes.get(e.getKey()).size());
+                  dependency.put("sha256", hashes.get(e.getKey()).sha256());
+                  return dependency;
+                })
             .toList();
 
-    Map<String, Object> doc =
-        Map.of(
-            "besuVersion",
-            getProject().property("besuVersion").toString(),
-            "dependencies",
-            jsonDependencies);
+    Map<String, Object> doc = new LinkedHashMap<>();
+    doc.put("besuVersion", getBesuVersion().get());
+    doc.put("dependencies", jsonDependencies);
 
     JsonBuilder jsonBuilder = new JsonBuilder(doc);
 
     String json = jsonBuilder.toPrettyString();
-    getLogger().lifecycle("Generated artifacts catalog {}", json);
-    var catalogFile =
-        getProject()
-            .getLayout()
-            .getBuildDirectory()
-            .file(PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH)
-            .get()
-            .getAsFile();
-    catalogFile.getParentFile().mkdirs();
+    getLogger().info("Generated artifacts catalog {}", json);
+    var catalogFile = getArtifactsCatalog().get().getAsFile();
     try {
       Files.writeString(catalogFile.toPath(), json, StandardCharsets.UTF_8);
     } catch (IOException e) {
       throw new RuntimeException(
           "Unable to write plugin artifacts catalog to file " + catalogFile, e);
     }
+
+    if (getBinaryArtifactsCatalog().isPresent()) {
+      var binaryCatalogFile = getBinaryArtifactsCatalog().get().getAsFile();
+      try {
+        PluginArtifactsCatalog.write(
+            binaryCatalogFile.toPath(),
+            sortedArtifacts.stream()
+                .map(
+                    e ->
+                        new PluginArtifactsCatalog.Entry(
+                            e.getValue().getGroup(),
+                            e.getValue().getName(),
+                            e.getValue().getVersion(),
+                            e.getKey().getName(),
+                            hashes.get(e.getKey()).size(),
+                            hashes.get(e.getKey()).sha256()))
+                .toList());
+      } catch (IOException e) {
+        throw new RuntimeException(
+            "Unable to write binary plugin artifacts catalog to file " + binaryCatalogFile, e);
+      }
+    }
+  }
+
+  private void writePluginOnlyRuntimeArtifactsList(
+      final Map<File, ModuleVersionIdentifier> pluginOnlyRuntimeArtifacts) {
+    var listFile = getPluginOnlyRuntimeArtifactsList().get().getAsFile();
+    try {
+      Files.write(
+          listFile.toPath(),
+          pluginOnlyRuntimeArtifacts.keySet().stream().map(File::getAbsolutePath).sorted().toList(),
+          StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Unable to write plugin only runtime artifacts to file " + listFile, e);
+    }
+  }
+
+  /** Reads the plugin only runtime artifacts previously written by this task. */
+  static List<File> readPluginOnlyRuntimeArtifactsList(final File listFile) {
+    try {
+      return Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8).stream()
+          .filter(line -> !line.isBlank())
+          .map(File::new)
+          .toList();
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Unable to read plugin only runtime artifacts from file " + listFile, e);
+    }
   }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import javax.inject.Inject;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.jvm.toolchain.JavaLauncher;
+import org.gradle.process.ExecOperations;
+
+/**
+ * Runs a training launch of the Besu plugins, on the classpath of Besu, and records the classes
+ * loaded by the JVM, both as a class list, that is shipped with the distribution so that a CDS
+ * archive of Besu can include the classes of the plugin, and as a dynamic CDS archive, that is only
+ * valid for the JVM and the classpath of the training, and is used to measure the gain.
+ */
+public abstract class GeneratePluginClassListTask extends DefaultTask {
+  static final String TASK_NAME = "generatePluginClassList";
+  static final String CDS_DIRECTORY_RELATIVE_PATH = "besu-plugin/cds/";
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public abstract RegularFileProperty getPluginJar();
+
+  @Classpath
+  public abstract ConfigurableFileCollection getPluginOnlyRuntimeArtifacts();
+
+  @Classpath
+  public abstract ConfigurableFileCollection getBesuProvidedArtifacts();
+
+  @Nested
+  public abstract Property<JavaLauncher> getJavaLauncher();
+
+  /** The classes of the plugin jar, loaded by the training launch. */
+  @OutputFile
+  public abstract RegularFileProperty getPluginClassNames();
+
+  @OutputFile
+  public abstract RegularFileProperty getClassList();
+
+  @OutputFile
+  public abstract RegularFileProperty getDynamicArchive();
+
+  @Inject
+  protected abstract ExecOperations getExecOperations();
+
+  @TaskAction
+  public void generate() {
+    File pluginJar = getPluginJar().get().getAsFile();
+    File pluginClassNames = getPluginClassNames().get().getAsFile();
+    File classList = getClassList().get().getAsFile();
+    File dynamicArchive = getDynamicArchive().get().getAsFile();
+    writeLines(
+        pluginClassNames,
+        JarContents.classEntries(pluginJar.toPath()).stream()
+            .map(entry -> entry.substring(0, entry.length() - ".class".length()).replace('/', '.'))
+            .sorted()
+            .toList());
+
+    TrainingResult result =
+        launch(
+            getExecOperations(),
+            getJavaLauncher().get(),
+            trainingClasspath(
+                pluginJar, getPluginOnlyRuntimeArtifacts(), getBesuProvidedArtifacts()),
+            List.of(
+                "-XX:DumpLoadedClassList=" + classList.getAbsolutePath(),
+                "-XX:ArchiveClassesAtExit=" + dynamicArchive.getAbsolutePath()),
+            pluginClassNames);
+
+    // The launcher is not part of the plugin
+    try {
+      writeLines(
+          classList,
+          Files.readAllLines(classList.toPath(), StandardCharsets.UTF_8).stream()
+              .filter(
+                  line -> !line.contains(PluginTrainingLauncher.class.getName().replace('.', '/')))
+              .toList());
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read class list " + classList, e);
+    }
+
+    getLogger()
+        .lifecycle(
+            "Trained {} Besu plugins in {} ms, class list {}",
+            result.plugins(),
+            result.elapsedNanos() / 1_000_000,
+            classList);
+  }
+
+  record TrainingResult(int plugins, long elapsedNanos) {}
+
+  /** The launcher, then the plugin, then Besu, like the plugin classloader of Besu sees them. */
+  static List<Object> trainingClasspath(
+      final File pluginJar,
+      final FileCollection pluginOnlyRuntimeArtifacts,
+      final FileCollection besuProvidedArtifacts) {
+    File launcherLocation;
+    try {
+      launcherLocation =
+          new File(
+              PluginTrainingLauncher.class
+                  .getProtectionDomain()
+                  .getCodeSource()
+                  .getLocation()
+                  .toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException("Unable to locate the Besu plugin training launcher", e);
+    }
+    return List.of(launcherLocation, pluginJar, pluginOnlyRuntimeArtifacts, besuProvidedArtifacts);
+  }
+
+  /** Runs the training launcher, and returns what it reported. */
+  static TrainingResult launch(
+      final ExecOperations execOperations,
+      final JavaLauncher javaLauncher,
+      final List<Object> classpath,
+      final List<String> jvmArgs,
+      final File pluginClassNames) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    execOperations.javaexec(
+        spec -> {
+          spec.setExecutable(javaLauncher.getExecutablePath().getAsFile());
+          spec.classpath(classpath);
+          spec.getMainClass().set(PluginTrainingLauncher.class.getName());
+          spec.jvmArgs(jvmArgs);
+          spec.args(pluginClassNames.getAbsolutePath());
+          spec.setStandardOutput(output);
+        });
+    return output
+        .toString(StandardCharsets.UTF_8)
+        .lines()
+        .filter(line -> line.startsWith(PluginTrainingLauncher.OUTPUT_PREFIX))
+        .map(
+            line -> line.substring(PluginTrainingLauncher.OUTPUT_PREFIX.length()).trim().split(" "))
+        .map(fields -> new TrainingResult(Integer.parseInt(fields[0]), Long.parseLong(fields[1])))
+        .findFirst()
+        .orElseThrow(
+            () -> new IllegalStateException("The training launch of the Besu plugins failed"));
+  }
+
+  private static void writeLines(final File file, final List<String> lines) {
+    try {
+      Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write file " + file, e);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Indexes the packages of the jars of the plugin distribution, so that the plugin classloader can
+ * find the jar of a class without searching all of them, and reports the packages that are split
+ * between the plugin jars, or between the plugin jars and the jars provided by Besu.
+ *
+ * <p>The index has one line per package, with the package followed by the names of the jars that
+ * contain it. The jars are scanned in parallel, and only their central directory is read.
+ */
+@CacheableTask
+public abstract class IndexPluginPackagesTask extends DefaultTask {
+  static final String TASK_NAME = "indexPluginPackages";
+  static final String PACKAGE_INDEX_RELATIVE_PATH = "besu-plugin/plugin-package-index.txt";
+  static final String SPLIT_PACKAGES_REPORT_RELATIVE_PATH =
+      "reports/besu-plugin/split-packages.txt";
+
+  /** The class directories of the plugin, that are packaged in the plugin jar. */
+  @Classpath
+  public abstract ConfigurableFileCollection getPluginClasses();
+
+  @Input
+  public abstract Property<String> getPluginJarName();
+
+  @Classpath
+  public abstract ConfigurableFileCollection getPluginOnlyRuntimeArtifacts();
+
+  /** The jars provided by Besu, only used to detect split packages. */
+  @Classpath
+  public abstract ConfigurableFileCollection getBesuProvidedArtifacts();
+
+  @Internal
+  abstract Property<BesuPluginMetricsService> getMetricsService();
+
+  @OutputFile
+  public abstract RegularFileProperty getPackageIndex();
+
+  @OutputFile
+  public abstract RegularFileProperty getSplitPackagesReport();
+
+  @TaskAction
+  public void index() {
+    String pluginJarName = getPluginJarName().get();
+    List<File> pluginClasses = existing(getPluginClasses());
+    List<File> pluginOnlyArtifacts = existing(getPluginOnlyRuntimeArtifacts());
+    List<File> besuProvidedArtifacts = existing(getBesuProvidedArtifacts());
+
+    BesuPluginMetricsService metrics = getMetricsService().get();
+    Map<String, SortedSet<String>> pluginPackages =
+        metrics.time(
+            BesuPluginMetricsService.PACKAGE_SCAN,
+            () ->
+                jarsByPackage(
+                    Stream.concat(
+                        pluginClasses.stream().map(dir -> new Artifact(pluginJarName, dir)),
+                        pluginOnlyArtifacts.stream()
+                            .map(jar -> new Artifact(jar.getName(), jar)))));
+    Map<String, SortedSet<String>> besuPackages =
+        metrics.time(
+            BesuPluginMetricsService.PACKAGE_SCAN,
+            () ->
+                jarsByPackage(
+                    besuProvidedArtifacts.stream().map(jar -> new Artifact(jar.getName(), jar))));
+    metrics.count(
+        BesuPluginMetricsService.PACKAGE_SCAN,
+        "scannedArtifacts",
+        pluginClasses.size() + pluginOnlyArtifacts.size() + besuProvidedArtifacts.size());
+
+    List<String> index = new ArrayList<>();
+    List<String> splitInPlugin = new ArrayList<>();
+    List<String> splitWithBesu = new ArrayList<>();
+    pluginPackages.forEach(
+        (packageName, jars) -> {
+          index.add(packageName + " " + String.join(" ", jars));
+          if (jars.size() > 1) {
+            splitInPlugin.add("%s in %s".formatted(packageName, String.join(", ", jars)));
+          }
+          Set<String> besuJars = besuPackages.get(packageName);
+          if (besuJars != null) {
+            splitWithBesu.add(
+                "%s in %s, and in Besu provided %s"
+                    .formatted(packageName, String.join(", ", jars), String.join(", ", besuJars)));
+          }
+        });
+
+    List<String> report = new ArrayList<>();
+    report.add("Split across plugin jars (%d)".formatted(splitInPlugin.size()));
+    splitInPlugin.forEach(entry -> report.add("  " + entry));
+    report.add("Split with Besu provided jars (%d)".formatted(splitWithBesu.size()));
+    splitWithBesu.forEach(entry -> report.add("  " + entry));
+
+    write(getPackageIndex().get().getAsFile(), index);
+    File reportFile = getSplitPackagesReport().get().getAsFile();
+    write(reportFile, report);
+
+    getLogger()
+        .lifecycle(
+            "Indexed {} plugin packages, {} split across plugin jars, {} split with Besu provided"
+                + " jars, see {}",
+            pluginPackages.size(),
+            splitInPlugin.size(),
+            splitWithBesu.size(),
+            reportFile);
+  }
+
+  private record Artifact(String jarName, File file) {}
+
+  private static List<File> existing(final ConfigurableFileCollection files) {
+    return files.getFiles().stream().filter(File::exists).toList();
+  }
+
+  private static Map<String, SortedSet<String>> jarsByPackage(final Stream<Artifact> artifacts) {
+    return artifacts
+        .parallel()
+        .flatMap(
+            artifact ->
+                JarContents.classEntries(artifact.file().toPath()).stream()
+                    .map(JarContents::packageOf)
+                    .filter(packageName -> !packageName.isEmpty())
+                    .distinct()
+                    .map(packageName -> Map.entry(packageName, artifact.jarName())))
+        .collect(
+            Collectors.groupingBy(
+                Map.Entry::getKey,
+                TreeMap::new,
+                Collectors.mapping(Map.Entry::getValue, Collectors.toCollection(TreeSet::new))));
+  }
+
+  private static void write(final File file, final List<String> lines) {
+    try {
+      Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write file " + file, e);
+    }
+  }
+}
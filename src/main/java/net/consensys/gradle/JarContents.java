@@ -0,0 +1,107 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lists the classes of jars and class directories. Jars are read through {@link ZipFile}, that only
+ * reads the central directory, and never the content of the entries.
+ */
+final class JarContents {
+  private static final String VERSIONED_ENTRY_PREFIX = "META-INF/versions/";
+
+  private JarContents() {}
+
+  /**
+   * Returns the class entries of the jar, or of the class directory, with the multi release prefix
+   * removed, like {@code org/hyperledger/besu/Besu.class}.
+   */
+  static List<String> classEntries(final Path artifact) {
+    try {
+      if (Files.isDirectory(artifact)) {
+        try (Stream<Path> files = Files.walk(artifact)) {
+          return files
+              .filter(Files::isRegularFile)
+              .map(file -> artifact.relativize(file).toString().replace('\\', '/'))
+              .map(JarContents::unversioned)
+              .filter(JarContents::isClassEntry)
+              .toList();
+        }
+      }
+      try (ZipFile zipFile = new ZipFile(artifact.toFile())) {
+        return zipFile.stream()
+            .filter(entry -> !entry.isDirectory())
+            .map(ZipEntry::getName)
+            .map(JarContents::unversioned)
+            .filter(JarContents::isClassEntry)
+            .toList();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to list the classes of " + artifact, e);
+    }
+  }
+
+  /**
+   * Returns the class entries of the jar, reading them from the cache directory when a jar with the
+   * same content hash was already listed, and adding them to it otherwise.
+   */
+  static List<String> classEntries(
+      final Path jar, final ArtifactHashes hashes, final Path cacheDirectory) {
+    Path cacheFile = cacheDirectory.resolve(hashes.hash(jar).sha256());
+    try {
+      if (Files.isRegularFile(cacheFile)) {
+        return Files.readAllLines(cacheFile, StandardCharsets.UTF_8);
+      }
+      List<String> classEntries = classEntries(jar);
+      // Written to a temporary file first, as the same jar may be listed concurrently
+      Path temporaryFile =
+          Files.createTempFile(cacheDirectory, cacheFile.getFileName().toString(), ".tmp");
+      Files.write(temporaryFile, classEntries, StandardCharsets.UTF_8);
+      Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+      return classEntries;
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to cache the classes of " + jar + " in " + cacheFile, e);
+    }
+  }
+
+  /** Returns the package of the class entry, or an empty string for the default package. */
+  static String packageOf(final String classEntry) {
+    int lastSlash = classEntry.lastIndexOf('/');
+    return lastSlash < 0 ? "" : classEntry.substring(0, lastSlash).replace('/', '.');
+  }
+
+  private static String unversioned(final String entryName) {
+    if (entryName.startsWith(VERSIONED_ENTRY_PREFIX)) {
+      int versionEnd = entryName.indexOf('/', VERSIONED_ENTRY_PREFIX.length());
+      return versionEnd < 0 ? entryName : entryName.substring(versionEnd + 1);
+    }
+    return entryName;
+  }
+
+  private static boolean isClassEntry(final String entryName) {
+    return entryName.endsWith(".class")
+        && !entryName.startsWith("META-INF/")
+        && !entryName.endsWith("module-info.class");
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of the plugin artifacts catalog, that can be memory mapped and searched
+ * without a JSON parser.
+ *
+ * <p>All the values are big endian. The file starts with a fixed header: the magic number, the
+ * format version, the number of entries and the number of strings. It is followed by the string
+ * offsets table, with one more offset than strings, then the entries, sorted by the UTF-8 bytes of
+ * their group, name, version and filename, compared as unsigned, and finally the UTF-8 bytes of the
+ * deduplicated strings. Each entry is the string index of its group, name, version, filename and
+ * SHA-256, followed by the size of the artifact.
+ *
+ * <p>This class is shipped in the Gradle plugin jar, and only depends on the JDK, so that it can be
+ * copied by runtime readers until it has its own artifact.
+ */
+public final class PluginArtifactsCatalog {
+  static final int MAGIC = 0x42504143;
+  static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+  private static final int ENTRY_SIZE = 5 * Integer.BYTES + Long.BYTES;
+  private static final Comparator<Entry> ENTRY_ORDER =
+      Comparator.comparing((Entry entry) -> utf8(entry.group()), Arrays::compareUnsigned)
+          .thenComparing(entry -> utf8(entry.name()), Arrays::compareUnsigned)
+          .thenComparing(entry -> utf8(entry.version()), Arrays::compareUnsigned)
+          .thenComparing(entry -> utf8(entry.filename()), Arrays::compareUnsigned);
+
+  /** An artifact of the catalog. */
+  public record Entry(
+      String group, String name, String version, String filename, long size, String sha256) {}
+
+  private final ByteBuffer buffer;
+  private final int entryCount;
+  private final int stringCount;
+  private final int entriesOffset;
+  private final int stringsOffset;
+
+  private PluginArtifactsCatalog(final ByteBuffer buffer) {
+    this.buffer = buffer;
+    if (buffer.remaining() < HEADER_SIZE
+        || buffer.getInt(0) != MAGIC
+        || buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Not a plugin artifacts catalog");
+    }
+    this.entryCount = buffer.getInt(2 * Integer.BYTES);
+    this.stringCount = buffer.getInt(3 * Integer.BYTES);
+    this.entriesOffset = HEADER_SIZE + (stringCount + 1) * Integer.BYTES;
+    this.stringsOffset = entriesOffset + entryCount * ENTRY_SIZE;
+  }
+
+  /** Memory maps the catalog file. */
+  public static PluginArtifactsCatalog open(final Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new PluginArtifactsCatalog(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /** Reads the catalog from a buffer, for example the content of a jar entry. */
+  public static PluginArtifactsCatalog wrap(final ByteBuffer buffer) {
+    return new PluginArtifactsCatalog(buffer.slice());
+  }
+
+  public int size() {
+    return entryCount;
+  }
+
+  public Entry get(final int index) {
+    int offset = entriesOffset + index * ENTRY_SIZE;
+    return new Entry(
+        string(buffer.getInt(offset)),
+        string(buffer.getInt(offset + Integer.BYTES)),
+        string(buffer.getInt(offset + 2 * Integer.BYTES)),
+        string(buffer.getInt(offset + 3 * Integer.BYTES)),
+        buffer.getLong(offset + 5 * Integer.BYTES),
+        string(buffer.getInt(offset + 4 * Integer.BYTES)));
+  }
+
+  /**
+   * Binary searches the first entry with the given group and name, returns null if none. The group
+   * and the name are encoded once, and compared with the bytes of the catalog, so only the entry
+   * found is decoded.
+   */
+  public Entry find(final String group, final String name) {
+    byte[] groupBytes = utf8(group);
+    byte[] nameBytes = utf8(name);
+    int low = 0;
+    int high = entryCount;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareCoordinates(middle, groupBytes, nameBytes) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    if (low < entryCount && compareCoordinates(low, groupBytes, nameBytes) == 0) {
+      return get(low);
+    }
+    return null;
+  }
+
+  private int compareCoordinates(final int index, final byte[] group, final byte[] name) {
+    int offset = entriesOffset + index * ENTRY_SIZE;
+    int comparison = compareString(buffer.getInt(offset), group);
+    return comparison != 0
+        ? comparison
+        : compareString(buffer.getInt(offset + Integer.BYTES), name);
+  }
+
+  /** Compares the UTF-8 bytes of a string of the catalog with the given ones, as unsigned. */
+  private int compareString(final int index, final byte[] value) {
+    int start = buffer.getInt(HEADER_SIZE + index * Integer.BYTES);
+    int length = buffer.getInt(HEADER_SIZE + (index + 1) * Integer.BYTES) - start;
+    int position = stringsOffset + start;
+    for (int i = 0; i < Math.min(length, value.length); i++) {
+      int comparison = Byte.compareUnsigned(buffer.get(position + i), value[i]);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(length, value.length);
+  }
+
+  private static byte[] utf8(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private String string(final int index) {
+    int offsetsTable = HEADER_SIZE;
+    int start = buffer.getInt(offsetsTable + index * Integer.BYTES);
+    int end = buffer.getInt(offsetsTable + (index + 1) * Integer.BYTES);
+    byte[] bytes = new byte[end - start];
+    buffer.get(stringsOffset + start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Writes the entries to the given file, sorted by group, name, version and filename. */
+  public static void write(final Path file, final List<Entry> entries) throws IOException {
+    List<Entry> sortedEntries = entries.stream().sorted(ENTRY_ORDER).toList();
+
+    Map<String, Integer> stringIndexes = new HashMap<>();
+    List<byte[]> strings = new ArrayList<>();
+    int[][] entryStrings = new int[sortedEntries.size()][];
+    for (int i = 0; i < sortedEntries.size(); i++) {
+      Entry entry = sortedEntries.get(i);
+      entryStrings[i] = new int[5];
+      String[] values = {
+        entry.group(), entry.name(), entry.version(), entry.filename(), entry.sha256()
+      };
+      for (int j = 0; j < values.length; j++) {
+        entryStrings[i][j] =
+            stringIndexes.computeIfAbsent(
+                values[j],
+                value -> {
+                  strings.add(utf8(value));
+                  return strings.size() - 1;
+                });
+      }
+    }
+
+    ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+        DataOutputStream data = new DataOutputStream(out)) {
+      data.writeInt(MAGIC);
+      data.writeInt(FORMAT_VERSION);
+      data.writeInt(sortedEntries.size());
+      data.writeInt(strings.size());
+      data.writeInt(0);
+      for (byte[] string : strings) {
+        stringBytes.write(string);
+        data.writeInt(stringBytes.size());
+      }
+      for (int i = 0; i < sortedEntries.size(); i++) {
+        for (int stringIndex : entryStrings[i]) {
+          data.writeInt(stringIndex);
+        }
+        data.writeLong(sortedEntries.get(i).size());
+      }
+      stringBytes.writeTo(data);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Training launch of the Besu plugins, run in its own JVM on the Besu classpath, to record the
+ * classes they load. It loads the classes of the plugin listed in the file given as argument, and
+ * instantiates the {@code BesuPlugin} service providers, like Besu does at startup, then prints the
+ * number of plugins and the time it took. It must not depend on anything but the JDK.
+ */
+public final class PluginTrainingLauncher {
+  static final String OUTPUT_PREFIX = "besu-plugin-training:";
+  private static final String BESU_PLUGIN_SERVICE = "org.hyperledger.besu.plugin.BesuPlugin";
+
+  private PluginTrainingLauncher() {}
+
+  public static void main(final String[] args) throws IOException, ClassNotFoundException {
+    List<String> pluginClasses = Files.readAllLines(Path.of(args[0]), StandardCharsets.UTF_8);
+
+    long start = System.nanoTime();
+    ClassLoader classLoader = PluginTrainingLauncher.class.getClassLoader();
+    for (String pluginClass : pluginClasses) {
+      try {
+        Class.forName(pluginClass, false, classLoader);
+      } catch (ClassNotFoundException | LinkageError e) {
+        // Classes with optional dependencies are not needed for the training
+      }
+    }
+    int plugins = 0;
+    for (Object plugin : ServiceLoader.load(Class.forName(BESU_PLUGIN_SERVICE), classLoader)) {
+      plugins++;
+    }
+    long elapsed = System.nanoTime() - start;
+
+    System.out.println(OUTPUT_PREFIX + " " + plugins + " " + elapsed);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Resolves the Besu BOM and artifacts catalog, and writes the resulting {@link BesuDependencyModel}
+ * to a file that the other tasks consume.
+ *
+ * <p>Released Besu artifacts are immutable, so the Besu version and repository fully identify the
+ * output, and the BOM and the artifacts catalog, or the Besu main jar when the catalog is not
+ * published on its own, are not fingerprinted: they are only downloaded when the task actually
+ * runs, and not when its output is loaded from the build cache. Snapshot versions are never
+ * considered up-to-date, nor loaded from the build cache.
+ */
+@CacheableTask
+public abstract class ResolveBesuProvidedDependenciesTask extends DefaultTask {
+  static final String BESU_DEPENDENCY_MODEL_RELATIVE_PATH = "besu-plugin/besu-dependency-model.bin";
+
+  @Input
+  public abstract Property<String> getBesuVersion();
+
+  @Input
+  public abstract Property<String> getBesuRepo();
+
+  /** The format of the model file, so that a format change invalidates cached outputs. */
+  @Input
+  public int getModelFormatVersion() {
+    return BesuDependencyModel.FORMAT_VERSION;
+  }
+
+  /** The BOM and the optional catalog artifact, see {@link #getBesuBomAndMainJar()}. */
+  @Internal
+  public abstract ConfigurableFileCollection getBesuBomAndCatalog();
+
+  /** The BOM and the Besu main jar, only resolved when there is no catalog artifact. */
+  @Internal
+  public abstract ConfigurableFileCollection getBesuBomAndMainJar();
+
+  @Internal
+  abstract Property<BesuDependencyModelService> getModelService();
+
+  @Internal
+  abstract Property<BesuPluginMetricsService> getMetricsService();
+
+  @OutputFile
+  public abstract RegularFileProperty getBesuDependencyModelFile();
+
+  @TaskAction
+  public void resolve() {
+    String besuVersion = getBesuVersion().get();
+    String besuRepo = getBesuRepo().get();
+    BesuDependencyModel model =
+        getModelService()
+            .get()
+            .getModel(
+                besuVersion,
+                besuRepo,
+                () ->
+                    BesuPluginLibrary.parseBesuDependencyModel(
+                        getMetricsService().get(),
+                        besuVersion,
+                        getBesuBomAndCatalog(),
+                        getBesuBomAndMainJar()));
+
+    File modelFile = getBesuDependencyModelFile().get().getAsFile();
+    try {
+      model.writeFile(modelFile.toPath(), besuRepo);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write Besu dependency model file " + modelFile, e);
+    }
+  }
+
+  /** Snapshot versions can change, see the up-to-date and caching rules of the registration. */
+  boolean resolvesSnapshot() {
+    return getBesuVersion().get().endsWith("-SNAPSHOT");
+  }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Removes from the plugin only runtime artifacts the classes that cannot be reached from the Besu
+ * plugins, to make the distribution smaller.
+ *
+ * <p>The analysis starts from the {@code org.hyperledger.besu.plugin.BesuPlugin} service providers
+ * of the plugin, or from all the plugin classes when it declares none, and from the classes
+ * matching the keep rules. It follows the references found in the constant pool of each reached
+ * class, and the service providers of the reached services, and stops at the classes that are not
+ * part of the plugin, like the ones provided by Besu or by the JDK. The keep rules are class name
+ * patterns, where {@code *} matches within a package and {@code **} across packages, like {@code
+ * com.example.Reflected} or {@code com.example.**}.
+ *
+ * <p>The variants of a class under {@code META-INF/versions/N/} of a multi-release jar are analyzed
+ * with the class, so the references of each variant are reached, and all the variants are kept or
+ * removed together.
+ */
+@CacheableTask
+public abstract class ShrinkPluginOnlyArtifactsTask extends DefaultTask {
+  static final String TASK_NAME = "shrinkPluginOnlyArtifacts";
+  static final String SHRUNK_ARTIFACTS_DIRECTORY_RELATIVE_PATH = "besu-plugin/shrunk";
+  static final String SHRUNK_ARTIFACTS_LIST_RELATIVE_PATH = "besu-plugin/shrunk-artifacts.txt";
+  static final String REPORT_RELATIVE_PATH = "reports/besu-plugin/shrink.txt";
+  private static final String BESU_PLUGIN_SERVICE = "org.hyperledger.besu.plugin.BesuPlugin";
+  private static final String SERVICES_PREFIX = "META-INF/services/";
+
+  /** The class directories of the plugin, that are analyzed, but not shrunk. */
+  @Classpath
+  public abstract ConfigurableFileCollection getPluginClasses();
+
+  @Classpath
+  public abstract ConfigurableFileCollection getPluginOnlyRuntimeArtifacts();
+
+  @Input
+  public abstract ListProperty<String> getKeepRules();
+
+  @Internal
+  abstract Property<BesuPluginMetricsService> getMetricsService();
+
+  @OutputDirectory
+  public abstract DirectoryProperty getShrunkArtifactsDirectory();
+
+  @OutputFile
+  public abstract RegularFileProperty getShrunkArtifactsList();
+
+  @OutputFile
+  public abstract RegularFileProperty getReportFile();
+
+  /** Where a class of the plugin, or one of its multi-release variants, is. */
+  private record ClassLocation(File artifact, String entryName) {}
+
+  private record ShrinkResult(
+      File artifact, File shrunkArtifact, int classes, int keptClasses, long size, long keptSize) {}
+
+  @TaskAction
+  public void shrink() {
+    List<File> pluginClasses =
+        getPluginClasses().getFiles().stream().filter(File::isDirectory).toList();
+    List<File> artifacts =
+        getPluginOnlyRuntimeArtifacts().getFiles().stream().filter(File::isFile).toList();
+    List<Pattern> keepRules =
+        getKeepRules().get().stream().map(ShrinkPluginOnlyArtifactsTask::keepRulePattern).toList();
+
+    BesuPluginMetricsService metrics = getMetricsService().get();
+    List<ShrinkResult> results =
+        metrics.time(
+            BesuPluginMetricsService.SHRINK,
+            () -> {
+              Map<String, List<ClassLocation>> classes = new HashMap<>();
+              Map<String, List<String>> serviceProviders = new HashMap<>();
+              List<String> roots = new ArrayList<>();
+              for (File directory : pluginClasses) {
+                indexClassDirectory(directory, classes, serviceProviders, roots);
+              }
+              if (roots.isEmpty()) {
+                getLogger()
+                    .warn(
+                        "No {} service provider found, all the plugin classes are kept as roots",
+                        BESU_PLUGIN_SERVICE);
+                roots.addAll(classes.keySet());
+              }
+              for (File artifact : artifacts) {
+                indexJar(artifact, classes, serviceProviders);
+              }
+              classes.keySet().stream()
+                  .filter(
+                      className -> keepRules.stream().anyMatch(r -> r.matcher(className).matches()))
+                  .forEach(roots::add);
+
+              Set<String> reachable = reachableClasses(roots, classes, serviceProviders);
+              cleanShrunkArtifactsDirectory();
+              metrics.count(BesuPluginMetricsService.SHRINK, "reachableClasses", reachable.size());
+              return artifacts.parallelStream()
+                  .map(artifact -> shrinkJar(artifact, reachable))
+                  .toList();
+            });
+
+    writeShrunkArtifactsList(results);
+    File reportFile = writeReport(results);
+
+    int classes = results.stream().mapToInt(ShrinkResult::classes).sum();
+    int keptClasses = results.stream().mapToInt(ShrinkResult::keptClasses).sum();
+    long size = results.stream().mapToLong(ShrinkResult::size).sum();
+    long keptSize = results.stream().mapToLong(ShrinkResult::keptSize).sum();
+    getLogger()
+        .lifecycle(
+            "Shrunk plugin only runtime artifacts from {} to {} classes, and from {} to {} bytes,"
+                + " see {}",
+            classes,
+            keptClasses,
+            size,
+            keptSize,
+            reportFile);
+  }
+
+  private static Pattern keepRulePattern(final String keepRule) {
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < keepRule.length(); i++) {
+      char c = keepRule.charAt(i);
+      if (c == '*' && i + 1 < keepRule.length() && keepRule.charAt(i + 1) == '*') {
+        regex.append(".*");
+        i++;
+      } else if (c == '*') {
+        regex.append("[^.]*");
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  private static void indexClassDirectory(
+      final File directory,
+      final Map<String, List<ClassLocation>> classes,
+      final Map<String, List<String>> serviceProviders,
+      final List<String> roots) {
+    Path root = directory.toPath();
+    try (Stream<Path> files = Files.walk(root)) {
+      for (Path file : files.filter(Files::isRegularFile).toList()) {
+        String entryName = root.relativize(file).toString().replace('\\', '/');
+        String classEntry = versionedClassEntry(entryName);
+        if (classEntry != null) {
+          classes
+              .computeIfAbsent(className(classEntry), c -> new ArrayList<>())
+              .add(new ClassLocation(directory, entryName));
+        } else if (entryName.startsWith(SERVICES_PREFIX)) {
+          List<String> providers = serviceProviders(Files.readAllLines(file));
+          String service = entryName.substring(SERVICES_PREFIX.length());
+          serviceProviders.computeIfAbsent(service, s -> new ArrayList<>()).addAll(providers);
+          if (service.equals(BESU_PLUGIN_SERVICE)) {
+            roots.addAll(providers);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to index plugin classes " + directory, e);
+    }
+  }
+
+  private static void indexJar(
+      final File jar,
+      final Map<String, List<ClassLocation>> classes,
+      final Map<String, List<String>> serviceProviders) {
+    // A class of an earlier artifact hides the same class, and all its variants, in this one
+    Map<String, List<ClassLocation>> jarClasses = new HashMap<>();
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        String entryName = entry.getName();
+        if (entry.isDirectory()) {
+          continue;
+        }
+        String classEntry = versionedClassEntry(entryName);
+        if (classEntry != null) {
+          jarClasses
+              .computeIfAbsent(className(classEntry), c -> new ArrayList<>())
+              .add(new ClassLocation(jar, entryName));
+        } else if (entryName.startsWith(SERVICES_PREFIX)) {
+          try (InputStream in = zipFile.getInputStream(entry)) {
+            serviceProviders
+                .computeIfAbsent(
+                    entryName.substring(SERVICES_PREFIX.length()), s -> new ArrayList<>())
+                .addAll(
+                    serviceProviders(
+                        new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList()));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to index plugin only runtime artifact " + jar, e);
+    }
+    jarClasses.forEach(classes::putIfAbsent);
+  }
+
+  private static List<String> serviceProviders(final List<String> lines) {
+    return lines.stream()
+        .map(line -> line.replaceFirst("#.*", "").trim())
+        .filter(line -> !line.isEmpty())
+        .toList();
+  }
+
+  /**
+   * Walks the class references from the roots, with an explicit queue, and returns the names of the
+   * reached classes of the plugin.
+   */
+  private static Set<String> reachableClasses(
+      final List<String> roots,
+      final Map<String, List<ClassLocation>> classes,
+      final Map<String, List<String>> serviceProviders) {
+    // The jars stay open during the walk, instead of being opened again for each class
+    Map<File, ZipFile> jars = new HashMap<>();
+    try {
+      return reachableClasses(roots, classes, serviceProviders, jars);
+    } finally {
+      for (ZipFile zipFile : jars.values()) {
+        try {
+          zipFile.close();
+        } catch (IOException e) {
+          // Nothing else to do with the jar
+        }
+      }
+    }
+  }
+
+  private static Set<String> reachableClasses(
+      final List<String> roots,
+      final Map<String, List<ClassLocation>> classes,
+      final Map<String, List<String>> serviceProviders,
+      final Map<File, ZipFile> jars) {
+    Set<String> referenced = new HashSet<>();
+    Set<String> reachable = new HashSet<>();
+    Deque<String> pending = new ArrayDeque<>();
+    for (String root : roots) {
+      if (referenced.add(root)) {
+        pending.add(root);
+      }
+    }
+    while (!pending.isEmpty()) {
+      String className = pending.poll();
+      // The service providers are kept as soon as the service is referenced
+      for (String provider : serviceProviders.getOrDefault(className, List.of())) {
+        if (referenced.add(provider)) {
+          pending.add(provider);
+        }
+      }
+      List<ClassLocation> locations = classes.get(className);
+      if (locations == null) {
+        // Provided by Besu or by the JDK, or missing, so outside the analysis
+        continue;
+      }
+      reachable.add(className);
+      for (ClassLocation location : locations) {
+        for (String reference : classReferences(location, jars)) {
+          String referencedClass = reference.replace('/', '.');
+          if (referenced.add(referencedClass)) {
+            pending.add(referencedClass);
+          }
+        }
+      }
+    }
+    return reachable;
+  }
+
+  private static Set<String> classReferences(
+      final ClassLocation location, final Map<File, ZipFile> jars) {
+    try {
+      if (location.artifact().isDirectory()) {
+        return ClassReferences.referencedClassNames(
+            Files.readAllBytes(location.artifact().toPath().resolve(location.entryName())));
+      }
+      ZipFile zipFile = jars.get(location.artifact());
+      if (zipFile == null) {
+        zipFile = new ZipFile(location.artifact());
+        jars.put(location.artifact(), zipFile);
+      }
+      try (InputStream in = zipFile.getInputStream(zipFile.getEntry(location.entryName()))) {
+        return ClassReferences.referencedClassNames(in.readAllBytes());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Unable to read class " + location.entryName() + " of " + location.artifact(), e);
+    }
+  }
+
+  private void cleanShrunkArtifactsDirectory() {
+    File directory = getShrunkArtifactsDirectory().get().getAsFile();
+    File[] files = directory.listFiles();
+    try {
+      if (files != null) {
+        for (File file : files) {
+          Files.delete(file.toPath());
+        }
+      }
+      Files.createDirectories(directory.toPath());
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to clean shrunk artifacts directory " + directory, e);
+    }
+  }
+
+  private ShrinkResult shrinkJar(final File jar, final Set<String> reachable) {
+    File shrunkJar = new File(getShrunkArtifactsDirectory().get().getAsFile(), jar.getName());
+    int classes = 0;
+    int keptClasses = 0;
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      List<ZipEntry> keptEntries = new ArrayList<>();
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        String classEntry = versionedClassEntry(entry.getName());
+        if (classEntry == null) {
+          keptEntries.add(entry);
+          continue;
+        }
+        classes++;
+        if (reachable.contains(className(classEntry))) {
+          keptClasses++;
+          keptEntries.add(entry);
+        }
+      }
+
+      Files.deleteIfExists(shrunkJar.toPath());
+      if (keptClasses == classes) {
+        Files.copy(jar.toPath(), shrunkJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        try (OutputStream out = Files.newOutputStream(shrunkJar.toPath());
+            ZipOutputStream zipOut = new ZipOutputStream(out)) {
+          for (ZipEntry entry : keptEntries) {
+            // The signatures do not match a shrunk jar
+            if (isSignatureEntry(entry.getName())) {
+              continue;
+            }
+            ZipEntry shrunkEntry = new ZipEntry(entry.getName());
+            shrunkEntry.setTime(entry.getTime());
+            zipOut.putNextEntry(shrunkEntry);
+            try (InputStream in = zipFile.getInputStream(entry)) {
+              in.transferTo(zipOut);
+            }
+            zipOut.closeEntry();
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to shrink plugin only runtime artifact " + jar, e);
+    }
+    return new ShrinkResult(jar, shrunkJar, classes, keptClasses, jar.length(), shrunkJar.length());
+  }
+
+  /** Returns the class entry, without the multi release prefix, or null if not a class. */
+  private static String versionedClassEntry(final String entryName) {
+    if (!entryName.endsWith(".class")
+        || entryName.endsWith("module-info.class")
+        || (entryName.startsWith("META-INF/") && !entryName.startsWith("META-INF/versions/"))) {
+      return null;
+    }
+    if (entryName.startsWith("META-INF/versions/")) {
+      int versionEnd = entryName.indexOf('/', "META-INF/versions/".length());
+      return versionEnd < 0 ? null : entryName.substring(versionEnd + 1);
+    }
+    return entryName;
+  }
+
+  private static boolean isSignatureEntry(final String entryName) {
+    return entryName.startsWith("META-INF/")
+        && entryName.indexOf('/', "META-INF/".length()) < 0
+        && (entryName.endsWith(".SF")
+            || entryName.endsWith(".RSA")
+            || entryName.endsWith(".DSA")
+            || entryName.endsWith(".EC"));
+  }
+
+  private static String className(final String classEntry) {
+    return classEntry.substring(0, classEntry.length() - ".class".length()).replace('/', '.');
+  }
+
+  private void writeShrunkArtifactsList(final List<ShrinkResult> results) {
+    var listFile = getShrunkArtifactsList().get().getAsFile();
+    try {
+      Files.write(
+          listFile.toPath(),
+          results.stream()
+              .map(result -> result.shrunkArtifact().getAbsolutePath())
+              .sorted()
+              .toList(),
+          StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write shrunk artifacts to file " + listFile, e);
+    }
+  }
+
+  private File writeReport(final List<ShrinkResult> results) {
+    List<String> report = new ArrayList<>();
+    report.add("artifact classes kept-classes size shrunk-size");
+    results.stream()
+        .sorted((a, b) -> a.artifact().getName().compareTo(b.artifact().getName()))
+        .forEach(
+            result ->
+                report.add(
+                    "%s %d %d %d %d"
+                        .formatted(
+                            result.artifact().getName(),
+                            result.classes(),
+                            result.keptClasses(),
+                            result.size(),
+                            result.keptSize())));
+    File reportFile = getReportFile().get().getAsFile();
+    try {
+      Files.write(reportFile.toPath(), report, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write shrink report " + reportFile, e);
+    }
+    return reportFile;
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurper;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.BuildTask;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * The configuration and build times of the perf test fixture builds, generated by the scale fixture
+ * of gradle/scale-fixture.gradle with a growing number of plugin modules, whose Besu BOM, besu-app
+ * jar and libraries are served over HTTP from the repository of the fixture. The timings of all the
+ * builds are written to a file, and each of them is compared with its baseline.
+ */
+class BesuPluginPerformanceTest {
+  private static final Path FIXTURES_DIR = Path.of(System.getProperty("perfTest.fixturesDir"));
+  private static final Path BASELINE = Path.of(System.getProperty("perfTest.baseline"));
+  private static final Path TIMINGS = Path.of(System.getProperty("perfTest.timings"));
+  private static final double THRESHOLD =
+      Double.parseDouble(System.getProperty("perfTest.threshold"));
+  private static final boolean UPDATE_BASELINE =
+      Boolean.parseBoolean(System.getProperty("perfTest.updateBaseline"));
+
+  /** The timings in milliseconds, by fixture and measure, like plugins-50.warmConfiguration. */
+  private static final Map<String, Long> timings = new TreeMap<>();
+
+  @TempDir Path projectDir;
+
+  private HttpRepositoryServer server;
+
+  static Stream<Integer> modules() {
+    return Arrays.stream(System.getProperty("perfTest.modules").split(","))
+        .map(String::trim)
+        .map(Integer::valueOf);
+  }
+
+  @BeforeEach
+  void setUp() {
+    server = new HttpRepositoryServer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @ParameterizedTest(name = "plugins-{0}")
+  @MethodSource("modules")
+  void buildTimesDoNotExceedTheBaseline(final int plugins) throws IOException {
+    String fixture = "plugins-" + plugins;
+    Path fixtureDir = FIXTURES_DIR.resolve(fixture);
+    Path repository = fixtureDir.resolve("repo");
+    new MavenRepositoryFixture(repository).writeChecksums();
+    server.serve("/repo/", repository);
+    copyBuild(fixtureDir, projectDir);
+    Path initScript = projectDir.resolve("insecure-repositories.gradle");
+    // The HTTP stand-in of the repository is served over plain HTTP
+    Files.writeString(
+        initScript,
+        """
+        allprojects {
+          repositories.configureEach {
+            if (it instanceof MavenArtifactRepository) {
+              it.allowInsecureProtocol = true
+            }
+          }
+        }
+        """,
+        StandardCharsets.UTF_8);
+
+    // A Gradle user home of its own, so that the first build starts without daemon, dependency
+    // cache, nor Besu dependency model cache
+    Path testKitDir =
+        PluginTestProject.TEST_KIT_DIR.resolveSibling("perf-test-kit").resolve(fixture);
+    deleteDirectory(testKitDir);
+    List<String> arguments =
+        List.of(
+            "-PscaleFixtureRepository=" + server.url("/repo/"),
+            "--init-script",
+            initScript.toString());
+
+    Map<String, Long> fixtureTimings = new TreeMap<>();
+    fixtureTimings.put(
+        "coldConfiguration", time(testKitDir, arguments, "distZip", "--dry-run").millis());
+    time(testKitDir, arguments, "distZip", "--dry-run");
+    fixtureTimings.put(
+        "warmConfiguration", time(testKitDir, arguments, "distZip", "--dry-run").millis());
+
+    Timed distZip = time(testKitDir, arguments, "distZip");
+    assertEquals(TaskOutcome.SUCCESS, distZip.result().task(":plugin-0:distZip").getOutcome());
+    fixtureTimings.put("distZip", distZip.millis());
+
+    Timed compileJava = time(testKitDir, arguments, "compileJava");
+    assertEquals(
+        List.of(TaskOutcome.UP_TO_DATE),
+        compileJava.result().getTasks().stream()
+            .filter(task -> task.getPath().endsWith(":compileJava"))
+            .map(BuildTask::getOutcome)
+            .distinct()
+            .toList());
+    fixtureTimings.put("compileJavaUpToDate", compileJava.millis());
+
+    Map<String, Object> baseline = readBaseline();
+    List<Executable> comparisons = new ArrayList<>();
+    fixtureTimings.forEach(
+        (measure, millis) -> {
+          String name = fixture + "." + measure;
+          timings.put(name, millis);
+          if (!UPDATE_BASELINE && baseline.get(name) instanceof Number baselineMillis) {
+            long limit = Math.round(baselineMillis.longValue() * (1 + THRESHOLD));
+            comparisons.add(
+                () ->
+                    assertTrue(
+                        millis <= limit,
+                        "%s took %d ms, over %d ms, the baseline of %d ms plus %.0f%%"
+                            .formatted(
+                                name, millis, limit, baselineMillis.longValue(), THRESHOLD * 100)));
+          }
+        });
+    assertAll(comparisons);
+  }
+
+  /**
+   * Writes the timings of the run, and adds them to the baseline when they are missing from it, or
+   * replaces it with them when the baseline is updated.
+   */
+  @AfterAll
+  static void writeTimings() throws IOException {
+    Files.createDirectories(TIMINGS.getParent());
+    Files.writeString(TIMINGS, toJson(timings), StandardCharsets.UTF_8);
+
+    Map<String, Object> baseline = new TreeMap<>(readBaseline());
+    timings.forEach(
+        (name, millis) -> {
+          if (UPDATE_BASELINE) {
+            baseline.put(name, millis);
+          } else {
+            baseline.putIfAbsent(name, millis);
+          }
+        });
+    Files.createDirectories(BASELINE.getParent());
+    Files.writeString(BASELINE, toJson(baseline), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A build and its wall clock time.
+   *
+   * @param millis the time of the build, including the connection to the daemon
+   */
+  private record Timed(BuildResult result, long millis) {}
+
+  private Timed time(final Path testKitDir, final List<String> arguments, final String... tasks) {
+    List<String> allArguments = new ArrayList<>(arguments);
+    allArguments.addAll(List.of(tasks));
+    GradleRunner runner =
+        GradleRunner.create()
+            .withProjectDir(projectDir.toFile())
+            .withTestKitDir(testKitDir.toFile())
+            .withPluginClasspath()
+            .withArguments(allArguments);
+    long start = System.nanoTime();
+    BuildResult result = runner.build();
+    return new Timed(result, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> readBaseline() {
+    if (!Files.isRegularFile(BASELINE)) {
+      return Map.of();
+    }
+    return (Map<String, Object>) new JsonSlurper().parse(BASELINE.toFile());
+  }
+
+  private static String toJson(final Map<String, ?> timings) {
+    return JsonOutput.prettyPrint(JsonOutput.toJson(timings)) + "\n";
+  }
+
+  /** Copies the build of the fixture, without its repository, that is served instead. */
+  private static void copyBuild(final Path fixtureDir, final Path target) throws IOException {
+    Path repository = fixtureDir.resolve("repo");
+    try (Stream<Path> files = Files.walk(fixtureDir)) {
+      for (Path file : files.filter(file -> !file.startsWith(repository)).toList()) {
+        Path copy = target.resolve(fixtureDir.relativize(file).toString());
+        if (Files.isDirectory(file)) {
+          Files.createDirectories(copy);
+        } else {
+          Files.copy(file, copy);
+        }
+      }
+    }
+  }
+
+  private static void deleteDirectory(final Path dir) {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(dir)) {
+      for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+        Files.delete(file);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to delete directory " + dir, e);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
+
+import net.consensys.gradle.BesuPluginLibrary.BesuProvidedDependency;
+import org.junit.jupiter.api.Test;
+
+class BesuBomParserTest {
+
+  @Test
+  void readsTheManagedDependencies() throws XMLStreamException {
+    assertEquals(
+        List.of(
+            new BesuProvidedDependency("com.example", "lib", "1.0", null, null),
+            new BesuProvidedDependency("com.example", "native", "2.0", "linux-x86_64", null)),
+        parse(
+            """
+            <project>
+              <dependencyManagement>
+                <dependencies>
+                  <dependency>
+                    <groupId>com.example</groupId>
+                    <artifactId>lib</artifactId>
+                    <version>1.0</version>
+                  </dependency>
+                  <dependency>
+                    <groupId> com.example </groupId>
+                    <artifactId>native</artifactId>
+                    <version>2.0</version>
+                    <classifier>linux-x86_64</classifier>
+                  </dependency>
+                </dependencies>
+              </dependencyManagement>
+            </project>
+            """));
+  }
+
+  @Test
+  void ignoresTheDependenciesOutsideDependencyManagement() throws XMLStreamException {
+    assertEquals(
+        List.of(new BesuProvidedDependency("com.example", "managed", "1.0", null, null)),
+        parse(
+            """
+            <project>
+              <dependencies>
+                <dependency>
+                  <groupId>com.example</groupId>
+                  <artifactId>direct</artifactId>
+                  <version>1.0</version>
+                </dependency>
+              </dependencies>
+              <dependencyManagement>
+                <dependencies>
+                  <dependency>
+                    <groupId>com.example</groupId>
+                    <artifactId>managed</artifactId>
+                    <version>1.0</version>
+                  </dependency>
+                </dependencies>
+              </dependencyManagement>
+              <build>
+                <plugins>
+                  <plugin>
+                    <dependencies>
+                      <dependency>
+                        <groupId>com.example</groupId>
+                        <artifactId>plugin-dependency</artifactId>
+                        <version>1.0</version>
+                      </dependency>
+                    </dependencies>
+                  </plugin>
+                </plugins>
+              </build>
+            </project>
+            """));
+  }
+
+  @Test
+  void ignoresTheCoordinatesOfTheExclusions() throws XMLStreamException {
+    assertEquals(
+        List.of(new BesuProvidedDependency("com.example", "lib", "1.0", null, null)),
+        parse(
+            """
+            <project>
+              <dependencyManagement>
+                <dependencies>
+                  <dependency>
+                    <groupId>com.example</groupId>
+                    <artifactId>lib</artifactId>
+                    <exclusions>
+                      <exclusion>
+                        <groupId>org.excluded</groupId>
+                        <artifactId>excluded</artifactId>
+                      </exclusion>
+                    </exclusions>
+                    <version>1.0</version>
+                  </dependency>
+                </dependencies>
+              </dependencyManagement>
+            </project>
+            """));
+  }
+
+  @Test
+  void skipsTheImportedBoms() throws XMLStreamException {
+    assertEquals(
+        List.of(),
+        parse(
+            """
+            <project>
+              <dependencyManagement>
+                <dependencies>
+                  <dependency>
+                    <groupId>com.example</groupId>
+                    <artifactId>bom</artifactId>
+                    <version>1.0</version>
+                    <type>pom</type>
+                    <scope>import</scope>
+                  </dependency>
+                </dependencies>
+              </dependencyManagement>
+            </project>
+            """));
+  }
+
+  private static List<BesuProvidedDependency> parse(final String bom) throws XMLStreamException {
+    return BesuBomParser.parse(new ByteArrayInputStream(bom.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The download of the artifacts catalog, on its own or within the Besu main jar, from an HTTP
+ * stand-in of the Besu repository.
+ */
+class BesuCatalogDownloadTest {
+  private static final int BESU_MAIN_JAR_PADDING = 8 * 1024 * 1024;
+  private static final String BESU_MAIN_JAR_PATH =
+      "/"
+          + MavenRepositoryFixture.artifactPath(
+              "org.hyperledger.besu.internal",
+              "besu-app",
+              MavenRepositoryFixture.BESU_VERSION,
+              "jar");
+  private static final String BESU_CATALOG_PATH =
+      "/"
+          + MavenRepositoryFixture.artifactPath(
+              "org.hyperledger.besu.internal",
+              "besu-app",
+              MavenRepositoryFixture.BESU_VERSION,
+              BesuPluginLibrary.BESU_ARTIFACTS_CATALOG_CLASSIFIER,
+              "json");
+
+  @TempDir Path repositoryDir;
+
+  @TempDir Path projectDir;
+
+  @TempDir Path otherProjectDir;
+
+  @TempDir Path catalogRepositoryDir;
+
+  private HttpRepositoryServer server;
+  private Path besuMainJar;
+
+  @BeforeEach
+  void setUp() {
+    MavenRepositoryFixture repository = new MavenRepositoryFixture(repositoryDir);
+    besuMainJar =
+        repository.publishBesu(List.of("com.example:besu-lib:1.0"), BESU_MAIN_JAR_PADDING);
+    repository.publishLibrary("com.acme", "plugin-lib", "1.0", List.of("com.example:besu-lib:1.0"));
+    server = new HttpRepositoryServer();
+    server.serve("/maven/", repositoryDir);
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @Test
+  void besuMainJarIsDownloadedOnceWithoutCatalogArtifact() throws IOException {
+    new PluginTestProject(projectDir, server.url("/maven/"), List.of("com.acme:plugin-lib:1.0"))
+        .runner("distZip")
+        .build();
+
+    // Gradle downloads whole artifacts: the jar is fetched once, without range requests. A jar of
+    // the same coordinates in the Gradle cache, from another test, is first checked with a HEAD
+    // request and its checksum
+    List<HttpRepositoryServer.Request> besuMainJarDownloads =
+        server.requestsOf(BESU_MAIN_JAR_PATH).stream()
+            .filter(request -> request.method().equals("GET"))
+            .toList();
+    assertEquals(1, besuMainJarDownloads.size(), server.getRequests().toString());
+    assertNull(besuMainJarDownloads.get(0).range());
+    assertEquals(Files.size(besuMainJar), besuMainJarDownloads.get(0).bytes());
+    assertTrue(
+        server.bytesSent() < Files.size(besuMainJar) + 64 * 1024, server.getRequests().toString());
+    // The catalog artifact is looked up first, and is missing
+    assertEquals(
+        Set.of(404),
+        server.requestsOf(BESU_CATALOG_PATH).stream()
+            .map(HttpRepositoryServer.Request::status)
+            .collect(Collectors.toSet()),
+        server.getRequests().toString());
+    assertEquals(
+        Set.of("besu-app-1.0.0.jar", "besu-app-1.0.0.pom", "besu-app-1.0.0-catalog.json"),
+        besuMainArtifactsRequested());
+  }
+
+  @Test
+  void besuMainJarIsNotDownloadedWithCatalogArtifact() throws IOException {
+    MavenRepositoryFixture repository =
+        new MavenRepositoryFixture(catalogRepositoryDir).withCatalogArtifact();
+    repository.publishBesu(List.of("com.example:besu-lib:1.0"), BESU_MAIN_JAR_PADDING);
+    repository.publishLibrary("com.acme", "plugin-lib", "1.0", List.of("com.example:besu-lib:1.0"));
+    server.serve("/catalog/", catalogRepositoryDir);
+
+    new PluginTestProject(projectDir, server.url("/catalog/"), List.of("com.acme:plugin-lib:1.0"))
+        .runner("distZip")
+        .build();
+
+    // Only the small catalog is downloaded, the Besu main jar is never requested
+    assertEquals(
+        Set.of("besu-app-1.0.0.pom", "besu-app-1.0.0-catalog.json"), besuMainArtifactsRequested());
+    assertTrue(server.bytesSent() < BESU_MAIN_JAR_PADDING / 8, server.getRequests().toString());
+  }
+
+  @Test
+  void besuMainJarIsNotDownloadedWhenTheModelIsCached() {
+    new PluginTestProject(projectDir, server.url("/maven/"), List.of("com.acme:plugin-lib:1.0"))
+        .runner("distZip")
+        .build();
+    server.clearRequests();
+
+    // Another build of the same Besu version reads the model from the Gradle user home
+    new PluginTestProject(
+            otherProjectDir, server.url("/maven/"), List.of("com.acme:plugin-lib:1.0"))
+        .runner("distZip", "--configuration-cache")
+        .build();
+
+    assertEquals(List.of(), server.requestsOf(BESU_MAIN_JAR_PATH));
+    assertEquals(0, server.bytesSent(), server.getRequests().toString());
+  }
+
+  /** The file names of the Besu main artifacts requested, without their checksum suffix. */
+  private Set<String> besuMainArtifactsRequested() {
+    return server.getRequests().stream()
+        .map(HttpRepositoryServer.Request::path)
+        .filter(path -> path.contains("/besu-app/"))
+        .map(path -> path.substring(path.lastIndexOf('/') + 1).replaceFirst("\\.sha1$", ""))
+        .collect(Collectors.toSet());
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The configuration cache of a Besu plugin build, that holds the Besu dependency model loaded
+ * through {@link BesuDependencyModelSource}.
+ */
+class BesuDependencyModelConfigurationCacheTest {
+  private static final String[] BUILD =
+      new String[] {"build", "--configuration-cache", "--configuration-cache-problems=fail"};
+  private static final String REUSED = "Reusing configuration cache.";
+
+  @TempDir Path repositoryDir;
+
+  @TempDir Path projectDir;
+
+  private MavenRepositoryFixture repository;
+  private PluginTestProject project;
+
+  @BeforeEach
+  void setUp() {
+    repository = new MavenRepositoryFixture(repositoryDir);
+    repository.publishBesu(List.of("com.example:besu-lib:1.0"), 0);
+    repository.publishLibrary("com.acme", "plugin-lib", "1.0", List.of("com.example:besu-lib:1.0"));
+    project =
+        new PluginTestProject(
+            projectDir, repositoryDir.toUri().toString(), List.of("com.acme:plugin-lib:1.0"));
+  }
+
+  @Test
+  void entryIsReusedAfterTheModelIsCached() {
+    BuildResult first = project.runner(BUILD).build();
+    assertTrue(first.getOutput().contains("Besu dependency model cache miss"), first.getOutput());
+    assertTrue(first.getOutput().contains("Configuration cache entry stored."), first.getOutput());
+
+    // The first build wrote the persistent model cache and the model file, that are not inputs
+    BuildResult second = project.runner(BUILD).build();
+    assertTrue(second.getOutput().contains(REUSED), second.getOutput());
+  }
+
+  @Test
+  void entryIsReusedWhenTheSameModelIsParsedAgain() throws IOException {
+    project.runner(BUILD).build();
+
+    project.runner("clean").build();
+    deleteModelCache();
+    BuildResult result = project.runner(BUILD).build();
+    assertTrue(result.getOutput().contains(REUSED), result.getOutput());
+  }
+
+  @Test
+  void entryIsDiscardedWhenTheBesuSnapshotChanges() {
+    String snapshot = "1.1.0-SNAPSHOT";
+    repository.publishBesu(snapshot, List.of("com.example:besu-lib:1.0"), 0);
+    PluginTestProject snapshotProject =
+        new PluginTestProject(
+            projectDir,
+            repositoryDir.toUri().toString(),
+            List.of("com.acme:plugin-lib:1.0"),
+            snapshot);
+    snapshotProject.runner(BUILD).build();
+
+    // A snapshot is republished under the same version, its previous model file is stale
+    repository.publishBesu(
+        snapshot, List.of("com.example:besu-lib:1.0", "com.example:besu-lib2:1.0"), 0);
+    BuildResult result = snapshotProject.runner(BUILD).build();
+    assertTrue(
+        result.getOutput().contains("configuration cache cannot be reused"), result.getOutput());
+
+    BuildResult unchanged = snapshotProject.runner(BUILD).build();
+    assertTrue(unchanged.getOutput().contains(REUSED), unchanged.getOutput());
+  }
+
+  /** Removes the persistent model cache, that is shared by the builds of the tests. */
+  private static void deleteModelCache() throws IOException {
+    Path modelCache = PluginTestProject.TEST_KIT_DIR.resolve("caches/besu-plugin");
+    if (Files.exists(modelCache)) {
+      try (Stream<Path> files = Files.walk(modelCache)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+import groovy.json.JsonSlurper;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Builds the distribution of a small Besu plugin, with a library provided by Besu and a library
+ * that is not, both from a file repository.
+ */
+class BesuPluginDistributionFunctionalTest {
+  @TempDir Path repositoryDir;
+
+  @TempDir Path projectDir;
+
+  private Path pluginLibrary;
+  private PluginTestProject project;
+
+  @BeforeEach
+  void setUp() {
+    MavenRepositoryFixture repository = new MavenRepositoryFixture(repositoryDir);
+    repository.publishBesu(List.of("com.example:besu-lib:1.0"), 0);
+    pluginLibrary =
+        repository.publishLibrary(
+            "com.acme", "plugin-lib", "1.0", List.of("com.example:besu-lib:1.0"));
+    project =
+        new PluginTestProject(
+            projectDir,
+            repositoryDir.toUri().toString(),
+            List.of("com.acme:plugin-lib:1.0", "com.example:besu-lib:1.0"));
+  }
+
+  @Test
+  void distributionContainsOnlyTheArtifactsNotProvidedByBesu() throws IOException {
+    BuildResult result = project.runner("distZip").build();
+
+    assertEquals(TaskOutcome.SUCCESS, result.task(":distZip").getOutcome());
+    try (ZipFile zip =
+        new ZipFile(
+            project.file("build/distributions/" + PluginTestProject.NAME + ".zip").toFile())) {
+      List<String> files =
+          Collections.list(zip.entries()).stream()
+              .filter(entry -> !entry.isDirectory())
+              .map(entry -> entry.getName())
+              .sorted()
+              .toList();
+      assertEquals(
+          List.of(
+              PluginTestProject.NAME + "/" + PluginTestProject.NAME + ".jar",
+              PluginTestProject.NAME + "/plugin-lib-1.0.jar"),
+          files);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void catalogListsTheArtifactsNotProvidedByBesu() throws IOException {
+    project.runner("distZip").build();
+
+    Map<String, Object> catalog =
+        (Map<String, Object>)
+            new JsonSlurper()
+                .parseText(
+                    Files.readString(
+                        project.file(
+                            "build/"
+                                + CollectPluginOnlyRuntimeArtifactsTask
+                                    .PLUGIN_ARTIFACTS_CATALOG_RELATIVE_PATH)));
+    assertEquals(MavenRepositoryFixture.BESU_VERSION, catalog.get("besuVersion"));
+    assertEquals(
+        List.of(
+            Map.of(
+                "group",
+                "com.acme",
+                "name",
+                "plugin-lib",
+                "version",
+                "1.0",
+                "filename",
+                "plugin-lib-1.0.jar",
+                "size",
+                (int) Files.size(pluginLibrary),
+                "sha256",
+                MavenRepositoryFixture.sha256(pluginLibrary))),
+        catalog.get("dependencies"));
+  }
+
+  @Test
+  void configurationCacheIsReused() {
+    BuildResult first = project.runner("distZip", "--configuration-cache").build();
+    assertTrue(first.getOutput().contains("Configuration cache entry stored"), first.getOutput());
+
+    BuildResult second = project.runner("distZip", "--configuration-cache").build();
+    assertTrue(second.getOutput().contains("Reusing configuration cache"), second.getOutput());
+    assertEquals(TaskOutcome.UP_TO_DATE, second.task(":distZip").getOutcome());
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The HTTP requests of a Besu plugin build, whose Besu group and com.acme group are routed to their
+ * own repositories, and whose other groups are resolved from the repository of the build script.
+ * The same content is served under the three repositories, so that a lookup in the wrong one would
+ * succeed and be recorded.
+ */
+class BesuRepositoryRoutingTest {
+  private static final String BESU_REPOSITORY = "/besu/";
+  private static final String ACME_REPOSITORY = "/acme/";
+  private static final String BUILD_REPOSITORY = "/maven/";
+
+  @TempDir Path repositoryDir;
+
+  @TempDir Path projectDir;
+
+  private HttpRepositoryServer server;
+
+  @BeforeEach
+  void setUp() {
+    MavenRepositoryFixture repository =
+        new MavenRepositoryFixture(repositoryDir).withCatalogArtifact();
+    repository.publishBesu(List.of("com.example:besu-lib:1.0"), 0);
+    repository.publishLibrary(
+        "com.acme", "plugin-lib", "1.0", List.of("com.example:besu-lib:1.0", "org.other:lib:1.0"));
+    repository.publishLibrary("org.other", "lib", "1.0", List.of());
+    server = new HttpRepositoryServer();
+    for (String prefix : List.of(BESU_REPOSITORY, ACME_REPOSITORY, BUILD_REPOSITORY)) {
+      server.serve(prefix, repositoryDir);
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @Test
+  void eachFileIsRequestedOnceFromTheRepositoryOfItsGroup() {
+    new PluginTestProject(
+            projectDir, server.url(BUILD_REPOSITORY), List.of("com.acme:plugin-lib:1.0"))
+        .appendToBuildScript(
+            """
+            besuPlugin {
+              besuRepo = '%s'
+              repositoryRouting = ['com.acme': '%s']
+            }
+            """
+                .formatted(server.url(BESU_REPOSITORY), server.url(ACME_REPOSITORY)))
+        .runner("distZip")
+        .build();
+
+    List<HttpRepositoryServer.Request> requests = server.getRequests();
+    // No repository is probed for a file it does not have
+    assertEquals(List.of(), requests.stream().filter(request -> request.status() != 200).toList());
+    // Every file is requested once. A file Gradle already has in its cache, from another
+    // repository, is checked with a HEAD request and its checksum before being downloaded
+    assertEquals(
+        Map.of(),
+        requests.stream()
+            .collect(
+                Collectors.groupingBy(
+                    request -> request.method() + " " + request.path(), Collectors.counting()))
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getValue() > 1)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)),
+        requests.toString());
+    // Every group is resolved from its own repository only
+    assertEquals(
+        Map.of(
+            BESU_REPOSITORY, Set.of("org/hyperledger/"),
+            ACME_REPOSITORY, Set.of("com/acme/"),
+            BUILD_REPOSITORY, Set.of("com/example/", "org/other/")),
+        requests.stream()
+            .map(HttpRepositoryServer.Request::path)
+            .collect(
+                Collectors.groupingBy(
+                    path -> path.substring(0, path.indexOf('/', 1) + 1),
+                    Collectors.mapping(
+                        BesuRepositoryRoutingTest::groupDirectory, Collectors.toSet()))));
+    // The published catalog artifact is downloaded instead of the Besu main jar
+    assertTrue(
+        requests.stream()
+            .anyMatch(request -> request.path().endsWith("/besu-app-1.0.0-catalog.json")),
+        requests.toString());
+    assertTrue(
+        requests.stream().noneMatch(request -> request.path().endsWith("/besu-app-1.0.0.jar")),
+        requests.toString());
+  }
+
+  /** The directory of the first two levels of the group of a requested path, like com/acme/. */
+  private static String groupDirectory(final String path) {
+    String[] segments = path.split("/");
+    return segments[2] + "/" + segments[3] + "/";
+  }
+}
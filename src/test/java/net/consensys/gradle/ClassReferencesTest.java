@@ -0,0 +1,113 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ClassReferencesTest {
+  private static final String PREFIX = "net/consensys/gradle/ClassReferencesTest$";
+
+  @Retention(RetentionPolicy.RUNTIME)
+  @interface Marker {}
+
+  static class Instantiated {}
+
+  static class FieldType {}
+
+  static class Parameter {}
+
+  static class Element {}
+
+  static class TypeArgument {}
+
+  static class LoadedByName {}
+
+  static class Unreferenced {}
+
+  @Marker
+  @SuppressWarnings("unused")
+  static class Subject {
+    private final Object instance = new Instantiated();
+    private FieldType field;
+    private Element[] elements;
+    private List<TypeArgument> typeArguments;
+
+    void accept(final Parameter parameter) {}
+
+    Class<?> load() throws ClassNotFoundException {
+      return Class.forName("net.consensys.gradle.ClassReferencesTest$LoadedByName");
+    }
+  }
+
+  @Test
+  void findsTheClassConstants() throws IOException {
+    Set<String> references = referencesOf(Subject.class);
+
+    assertTrue(references.contains(PREFIX + "Instantiated"), references.toString());
+    assertTrue(references.contains("java/lang/Object"), references.toString());
+  }
+
+  @Test
+  void findsTheClassesOnlyInDescriptorsAndSignatures() throws IOException {
+    Set<String> references = referencesOf(Subject.class);
+
+    // A field, a parameter, an array element and a type argument are not class constants
+    assertTrue(references.contains(PREFIX + "FieldType"), references.toString());
+    assertTrue(references.contains(PREFIX + "Parameter"), references.toString());
+    assertTrue(references.contains(PREFIX + "Element"), references.toString());
+    assertTrue(references.contains(PREFIX + "TypeArgument"), references.toString());
+  }
+
+  @Test
+  void findsTheAnnotations() throws IOException {
+    Set<String> references = referencesOf(Subject.class);
+
+    assertTrue(references.contains(PREFIX + "Marker"), references.toString());
+  }
+
+  @Test
+  void findsTheClassesLoadedByName() throws IOException {
+    Set<String> references = referencesOf(Subject.class);
+
+    assertTrue(references.contains(PREFIX + "LoadedByName"), references.toString());
+    assertFalse(references.contains(PREFIX + "Unreferenced"), references.toString());
+  }
+
+  @Test
+  void rejectsAFileThatIsNotAClass() {
+    assertThrows(
+        IOException.class,
+        () -> ClassReferences.referencedClassNames("not a class".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static Set<String> referencesOf(final Class<?> type) throws IOException {
+    String resource = type.getName().substring(type.getPackageName().length() + 1) + ".class";
+    try (InputStream in = type.getResourceAsStream(resource)) {
+      return ClassReferences.referencedClassNames(in.readAllBytes());
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP stand-in of a Maven repository, that serves the files of a directory and records the
+ * requests it receives.
+ */
+final class HttpRepositoryServer implements AutoCloseable {
+  /**
+   * A request received by the server.
+   *
+   * @param range the Range header of the request, null if absent
+   * @param bytes the number of bytes of the response body
+   */
+  record Request(String method, String path, String range, int status, long bytes) {}
+
+  private final HttpServer server;
+  private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+  HttpRepositoryServer() {
+    try {
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to start the HTTP repository server", e);
+    }
+    // The paths out of the served directories are recorded too, as not found
+    server.createContext("/", exchange -> serve(exchange, null));
+    server.start();
+  }
+
+  /** The URL of the given path prefix, like /maven/. */
+  String url(final String prefix) {
+    return "http://%s:%d%s"
+        .formatted(server.getAddress().getHostString(), server.getAddress().getPort(), prefix);
+  }
+
+  /** Serves the given directory under the given path prefix. */
+  void serve(final String prefix, final Path root) {
+    server.createContext(
+        prefix, exchange -> serve(exchange, root.resolve(relativePath(exchange, prefix))));
+  }
+
+  List<Request> getRequests() {
+    return List.copyOf(requests);
+  }
+
+  void clearRequests() {
+    requests.clear();
+  }
+
+  /** The requests of the paths that end with the given suffix. */
+  List<Request> requestsOf(final String pathSuffix) {
+    return requests.stream().filter(request -> request.path().endsWith(pathSuffix)).toList();
+  }
+
+  long bytesSent() {
+    return requests.stream().mapToLong(Request::bytes).sum();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private static String relativePath(final HttpExchange exchange, final String prefix) {
+    return exchange.getRequestURI().getPath().substring(prefix.length());
+  }
+
+  private void serve(final HttpExchange exchange, final Path file) throws IOException {
+    String method = exchange.getRequestMethod();
+    String path = exchange.getRequestURI().getPath();
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    try (exchange) {
+      if (file == null || !Files.isRegularFile(file)) {
+        requests.add(new Request(method, path, range, 404, 0));
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      byte[] content = Files.readAllBytes(file);
+      if (method.equals("HEAD")) {
+        requests.add(new Request(method, path, range, 200, 0));
+        exchange.getResponseHeaders().set("Content-Length", Long.toString(content.length));
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+      requests.add(new Request(method, path, range, 200, content.length));
+      exchange.sendResponseHeaders(200, content.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(content);
+      }
+    }
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * A Maven repository, in a directory, with the Besu BOM, the Besu main jar with its artifacts
+ * catalog, and the libraries of the test builds.
+ */
+final class MavenRepositoryFixture {
+  static final String BESU_VERSION = "1.0.0";
+
+  private final Path root;
+  private boolean catalogArtifact;
+
+  MavenRepositoryFixture(final Path root) {
+    this.root = root;
+  }
+
+  /** Publishes the artifacts catalog of the next Besu versions on its own too, as a classifier. */
+  MavenRepositoryFixture withCatalogArtifact() {
+    this.catalogArtifact = true;
+    return this;
+  }
+
+  Path getRoot() {
+    return root;
+  }
+
+  /** The path of an artifact of the repository, relative to its root. */
+  static String artifactPath(
+      final String group, final String name, final String version, final String extension) {
+    return "%s/%s/%s/%s-%s.%s"
+        .formatted(group.replace('.', '/'), name, version, name, version, extension);
+  }
+
+  /** The path of an artifact of the repository with a classifier, relative to its root. */
+  static String artifactPath(
+      final String group,
+      final String name,
+      final String version,
+      final String classifier,
+      final String extension) {
+    return "%s/%s/%s/%s-%s-%s.%s"
+        .formatted(group.replace('.', '/'), name, version, name, version, classifier, extension);
+  }
+
+  /**
+   * Publishes a jar and its pom, with the given runtime dependencies, and returns the jar.
+   *
+   * @param dependencies the group:name:version of the dependencies
+   * @param entries the content of the jar, by entry name
+   */
+  Path publish(
+      final String group,
+      final String name,
+      final String version,
+      final List<String> dependencies,
+      final Map<String, byte[]> entries) {
+    writePom(
+        group,
+        name,
+        version,
+        "jar",
+        "<dependencies>%s</dependencies>"
+            .formatted(
+                dependencies.stream()
+                    .map(MavenRepositoryFixture::dependencyElement)
+                    .collect(Collectors.joining())));
+    Path jar = root.resolve(artifactPath(group, name, version, "jar"));
+    writeJar(jar, entries);
+    writeChecksum(jar);
+    return jar;
+  }
+
+  /** Publishes a library jar with a single class, and its pom. */
+  Path publishLibrary(
+      final String group,
+      final String name,
+      final String version,
+      final List<String> dependencies) {
+    return publish(
+        group,
+        name,
+        version,
+        dependencies,
+        Map.of(
+            group.replace('.', '/') + "/" + name.replace('-', '_') + "/Library.class",
+            name.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Publishes the Besu BOM, the Besu plugin API, and the Besu main jar, whose artifacts catalog
+   * lists the plugin API and the given libraries, that are published too. The catalog is also
+   * published as a classifier of the Besu main jar {@link #withCatalogArtifact() on demand}.
+   *
+   * @param besuProvidedLibraries the group:name:version of the libraries provided by Besu
+   * @param besuMainJarPadding the size of the random content added to the Besu main jar
+   * @return the Besu main jar
+   */
+  Path publishBesu(final List<String> besuProvidedLibraries, final int besuMainJarPadding) {
+    return publishBesu(BESU_VERSION, besuProvidedLibraries, besuMainJarPadding);
+  }
+
+  /** Publishes the given Besu version, see {@link #publishBesu(List, int)}. */
+  Path publishBesu(
+      final String besuVersion,
+      final List<String> besuProvidedLibraries,
+      final int besuMainJarPadding) {
+    List<String> besuProvided =
+        Stream.concat(
+                Stream.of("org.hyperledger.besu:besu-plugin-api:" + besuVersion),
+                besuProvidedLibraries.stream())
+            .toList();
+    for (String coordinates : besuProvided) {
+      String[] parts = coordinates.split(":");
+      publishLibrary(parts[0], parts[1], parts[2], List.of());
+    }
+
+    writePom(
+        "org.hyperledger.besu",
+        "bom",
+        besuVersion,
+        "pom",
+        "<dependencyManagement><dependencies>%s</dependencies></dependencyManagement>"
+            .formatted(
+                besuProvided.stream()
+                    .map(MavenRepositoryFixture::dependencyElement)
+                    .collect(Collectors.joining())));
+
+    String catalog =
+        besuProvided.stream()
+            .map(coordinates -> coordinates.split(":"))
+            .map(
+                parts ->
+                    "{\"group\":\"%s\",\"name\":\"%s\",\"version\":\"%s\",\"filename\":\"%s-%s.jar\"}"
+                        .formatted(parts[0], parts[1], parts[2], parts[1], parts[2]))
+            .collect(Collectors.joining(",", "[", "]"));
+    if (catalogArtifact) {
+      Path catalogFile =
+          root.resolve(
+              artifactPath(
+                  "org.hyperledger.besu.internal",
+                  "besu-app",
+                  besuVersion,
+                  BesuPluginLibrary.BESU_ARTIFACTS_CATALOG_CLASSIFIER,
+                  "json"));
+      write(catalogFile, catalog.getBytes(StandardCharsets.UTF_8));
+      writeChecksum(catalogFile);
+    }
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put(
+        BesuPluginLibrary.BESU_ARTIFACTS_CATALOG_ENTRY_NAME,
+        catalog.getBytes(StandardCharsets.UTF_8));
+    if (besuMainJarPadding > 0) {
+      byte[] padding = new byte[besuMainJarPadding];
+      // Unique to the repository, so that Gradle cannot reuse the jar of another test
+      new Random(root.toString().hashCode()).nextBytes(padding);
+      entries.put("padding.bin", padding);
+    }
+    return publish("org.hyperledger.besu.internal", "besu-app", besuVersion, List.of(), entries);
+  }
+
+  /**
+   * Writes the SHA-1 checksums of the files of a repository that has none, like the one of the
+   * scale fixture, so that Gradle does not look up the other checksum files.
+   */
+  void writeChecksums() {
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(root)) {
+      files =
+          walk.filter(Files::isRegularFile)
+              .filter(file -> !file.getFileName().toString().endsWith(".sha1"))
+              .toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to list repository " + root, e);
+    }
+    files.forEach(MavenRepositoryFixture::writeChecksum);
+  }
+
+  static String sha256(final Path file) {
+    return digest(file, "SHA-256");
+  }
+
+  private static String digest(final Path file, final String algorithm) {
+    try {
+      return HexFormat.of()
+          .formatHex(MessageDigest.getInstance(algorithm).digest(Files.readAllBytes(file)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void writePom(
+      final String group,
+      final String name,
+      final String version,
+      final String packaging,
+      final String content) {
+    Path pom = root.resolve(artifactPath(group, name, version, "pom"));
+    write(
+        pom,
+        ("<project><modelVersion>4.0.0</modelVersion><groupId>%s</groupId><artifactId>%s</artifactId>"
+                + "<version>%s</version><packaging>%s</packaging>%s</project>")
+            .formatted(group, name, version, packaging, content)
+            .getBytes(StandardCharsets.UTF_8));
+    writeChecksum(pom);
+  }
+
+  private static String dependencyElement(final String coordinates) {
+    String[] parts = coordinates.split(":");
+    return "<dependency><groupId>%s</groupId><artifactId>%s</artifactId><version>%s</version></dependency>"
+        .formatted(parts[0], parts[1], parts[2]);
+  }
+
+  /** Writes the entries stored, so that random content keeps the size of the jar. */
+  private static void writeJar(final Path jar, final Map<String, byte[]> entries) {
+    try {
+      Files.createDirectories(jar.getParent());
+      try (OutputStream out = Files.newOutputStream(jar);
+          JarOutputStream jarOut = new JarOutputStream(out)) {
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+          JarEntry jarEntry = new JarEntry(entry.getKey());
+          CRC32 crc = new CRC32();
+          crc.update(entry.getValue());
+          jarEntry.setMethod(ZipEntry.STORED);
+          jarEntry.setSize(entry.getValue().length);
+          jarEntry.setCrc(crc.getValue());
+          jarOut.putNextEntry(jarEntry);
+          jarOut.write(entry.getValue());
+          jarOut.closeEntry();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write jar " + jar, e);
+    }
+  }
+
+  /** Writes the SHA-1 checksum of the file next to it, that Gradle fetches with each file. */
+  private static void writeChecksum(final Path file) {
+    write(
+        file.resolveSibling(file.getFileName() + ".sha1"),
+        digest(file, "SHA-1").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void write(final Path file, final byte[] content) {
+    try {
+      Files.createDirectories(file.getParent());
+      Files.write(file, content);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write file " + file, e);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import net.consensys.gradle.PluginArtifactsCatalog.Entry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PluginArtifactsCatalogTest {
+  private static final String SHA256 =
+      "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+  private static final Entry JACKSON =
+      entry("com.fasterxml.jackson.core", "jackson-databind", "2.17.0", 1_600_000);
+  private static final Entry JACKSON_CORE =
+      entry("com.fasterxml.jackson.core", "jackson-core", "2.17.0", 580_000);
+  private static final Entry OKHTTP = entry("com.squareup.okhttp3", "okhttp", "4.12.0", 790_000);
+  // Not ASCII, sorted by its UTF-8 bytes, after all the ASCII groups
+  private static final Entry UNICODE = entry("org.ëxample", "lib", "1.0", 1_000);
+  private static final Entry VERTX = entry("io.vertx", "vertx-core", "4.5.7", 1_500_000);
+
+  @TempDir Path directory;
+
+  @Test
+  void readsTheEntriesWrittenSortedByCoordinates() throws IOException {
+    PluginArtifactsCatalog catalog = write(List.of(VERTX, UNICODE, JACKSON, OKHTTP, JACKSON_CORE));
+
+    assertEquals(
+        List.of(JACKSON_CORE, JACKSON, OKHTTP, VERTX, UNICODE),
+        IntStream.range(0, catalog.size()).mapToObj(catalog::get).toList());
+  }
+
+  @Test
+  void readsTheEntriesFromABuffer() throws IOException {
+    Path file = directory.resolve("catalog.bin");
+    PluginArtifactsCatalog.write(file, List.of(OKHTTP, JACKSON));
+
+    byte[] content = Files.readAllBytes(file);
+    // The catalog does not start at the beginning of the buffer, like in a larger file
+    ByteBuffer buffer = ByteBuffer.allocate(content.length + 3).position(3).put(content).flip();
+    buffer.position(3);
+    PluginArtifactsCatalog catalog = PluginArtifactsCatalog.wrap(buffer);
+
+    assertEquals(2, catalog.size());
+    assertEquals(OKHTTP, catalog.find("com.squareup.okhttp3", "okhttp"));
+  }
+
+  @Test
+  void findsEachEntryByGroupAndName() throws IOException {
+    List<Entry> entries = List.of(VERTX, UNICODE, JACKSON, OKHTTP, JACKSON_CORE);
+    PluginArtifactsCatalog catalog = write(entries);
+
+    for (Entry entry : entries) {
+      assertEquals(entry, catalog.find(entry.group(), entry.name()));
+    }
+  }
+
+  @Test
+  void findsTheFirstVersionOfAnArtifact() throws IOException {
+    Entry newer = entry("com.squareup.okhttp3", "okhttp", "5.0.0", 800_000);
+    PluginArtifactsCatalog catalog = write(List.of(newer, OKHTTP));
+
+    assertEquals(OKHTTP, catalog.find("com.squareup.okhttp3", "okhttp"));
+  }
+
+  @Test
+  void returnsNullForAMissingArtifact() throws IOException {
+    PluginArtifactsCatalog catalog = write(List.of(VERTX, UNICODE, JACKSON, OKHTTP));
+
+    // Before the first entry, after the last one, and between entries
+    assertNull(catalog.find("aa", "lib"));
+    assertNull(catalog.find("zz", "lib"));
+    assertNull(catalog.find("org.ëxample", "lib2"));
+    assertNull(catalog.find("com.google", "guava"));
+    // Same group, other name, and names that are a prefix or an extension of one in the catalog
+    assertNull(catalog.find("com.fasterxml.jackson.core", "jackson-annotations"));
+    assertNull(catalog.find("com.squareup.okhttp3", "okhtt"));
+    assertNull(catalog.find("com.squareup.okhttp3", "okhttp-sse"));
+    // The name of an entry under the group of another
+    assertNull(catalog.find("io.vertx", "okhttp"));
+  }
+
+  @Test
+  void readsAnEmptyCatalog() throws IOException {
+    PluginArtifactsCatalog catalog = write(List.of());
+
+    assertEquals(0, catalog.size());
+    assertNull(catalog.find("io.vertx", "vertx-core"));
+  }
+
+  @Test
+  void rejectsAFileThatIsNotACatalog() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PluginArtifactsCatalog.wrap(ByteBuffer.wrap("{\"dependencies\":[]}".getBytes())));
+  }
+
+  private PluginArtifactsCatalog write(final List<Entry> entries) throws IOException {
+    Path file = directory.resolve("catalog.bin");
+    PluginArtifactsCatalog.write(file, entries);
+    return PluginArtifactsCatalog.open(file);
+  }
+
+  private static Entry entry(
+      final String group, final String name, final String version, final long size) {
+    return new Entry(group, name, version, name + "-" + version + ".jar", size, SHA256);
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.gradle.testkit.runner.GradleRunner;
+
+/**
+ * A Besu plugin build, with a single plugin class, that applies the Besu plugin distribution plugin
+ * and resolves its dependencies from the given repository.
+ */
+final class PluginTestProject {
+  static final String NAME = "acme-plugin";
+
+  /**
+   * The test kit directory, shared by the tests so that they reuse the same daemon, in the build
+   * directory of this project, the working directory of the tests.
+   */
+  static final Path TEST_KIT_DIR = Path.of("build", "test-kit").toAbsolutePath();
+
+  private final Path projectDir;
+
+  /**
+   * @param repositoryUrl the URL of the repository of the dependencies and of Besu
+   * @param dependencies the group:name:version of the implementation dependencies
+   */
+  PluginTestProject(
+      final Path projectDir, final String repositoryUrl, final List<String> dependencies) {
+    this(projectDir, repositoryUrl, dependencies, MavenRepositoryFixture.BESU_VERSION);
+  }
+
+  PluginTestProject(
+      final Path projectDir,
+      final String repositoryUrl,
+      final List<String> dependencies,
+      final String besuVersion) {
+    this.projectDir = projectDir;
+    write("settings.gradle", "rootProject.name = '%s'%n".formatted(NAME));
+    write(
+        "build.gradle",
+        """
+        plugins {
+          id 'net.consensys.besu-plugin-distribution'
+        }
+
+        // The HTTP stand-ins of the repositories are served over plain HTTP
+        repositories.configureEach {
+          if (it instanceof MavenArtifactRepository) {
+            it.allowInsecureProtocol = true
+          }
+        }
+
+        repositories {
+          maven { url = '%s' }
+        }
+
+        besuPlugin {
+          besuVersion = '%s'
+          besuRepo = '%s'
+          mavenLocal = false
+        }
+
+        dependencies {
+        %s
+        }
+        """
+            .formatted(
+                repositoryUrl,
+                besuVersion,
+                repositoryUrl,
+                dependencies.stream()
+                    .map("  implementation '%s'"::formatted)
+                    .collect(Collectors.joining("\n"))));
+    write(
+        "src/main/java/com/acme/AcmePlugin.java",
+        """
+        package com.acme;
+
+        public class AcmePlugin {}
+        """);
+  }
+
+  /** Adds the given lines at the end of the build script, like a besuPlugin block. */
+  PluginTestProject appendToBuildScript(final String content) {
+    Path buildScript = projectDir.resolve("build.gradle");
+    try {
+      Files.writeString(buildScript, content, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write file " + buildScript, e);
+    }
+    return this;
+  }
+
+  Path file(final String relativePath) {
+    return projectDir.resolve(relativePath);
+  }
+
+  /** A runner of this build, with the plugins under test. */
+  GradleRunner runner(final String... arguments) {
+    return GradleRunner.create()
+        .withProjectDir(projectDir.toFile())
+        .withTestKitDir(TEST_KIT_DIR.toFile())
+        .withPluginClasspath()
+        .withArguments(arguments);
+  }
+
+  private void write(final String relativePath, final String content) {
+    Path file = projectDir.resolve(relativePath);
+    try {
+      Files.createDirectories(file.getParent());
+      Files.writeString(file, content, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write file " + file, e);
+    }
+  }
+}
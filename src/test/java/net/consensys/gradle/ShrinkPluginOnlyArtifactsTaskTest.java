@@ -0,0 +1,375 @@
+/*
+ * Copyright Consensys Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package net.consensys.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Shrinks a library jar against a plugin, both compiled by the test, so that each class of the
+ * library is reached, or not, in a single way.
+ */
+class ShrinkPluginOnlyArtifactsTaskTest {
+  private static final String BESU_PLUGIN_SERVICES =
+      "META-INF/services/org.hyperledger.besu.plugin.BesuPlugin";
+  private static final String JAVA_11_VARIANT = "META-INF/versions/11/";
+
+  @TempDir Path projectDir;
+
+  @TempDir Path workDir;
+
+  private Path libraryJar;
+  private Path signedJar;
+  private Path pluginClasses;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Path libraryClasses =
+        compile(
+            "library",
+            List.of(),
+            Map.of(
+                "com/lib/Used.java",
+                """
+                package com.lib;
+
+                public class Used {
+                  public Iterable<Service> services() {
+                    return java.util.ServiceLoader.load(Service.class);
+                  }
+                }
+                """,
+                "com/lib/Service.java",
+                "package com.lib; public interface Service {}",
+                "com/lib/ServiceImpl.java",
+                "package com.lib; public class ServiceImpl implements Service {}",
+                "com/lib/Parameter.java",
+                "package com.lib; public class Parameter {}",
+                "com/lib/Marker.java",
+                """
+                package com.lib;
+
+                @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+                public @interface Marker {}
+                """,
+                "com/lib/Reflected.java",
+                "package com.lib; public class Reflected {}",
+                "com/lib/Unused.java",
+                "package com.lib; public class Unused {}",
+                "com/lib/Java11Only.java",
+                "package com.lib; public class Java11Only {}"));
+    // The Java 11 variant of Used refers to a class that the base variant does not
+    Path java11Classes =
+        compile(
+            "library-java11",
+            List.of(libraryClasses),
+            Map.of(
+                "com/lib/Used.java",
+                "package com.lib; public class Used { Java11Only java11Only; }"));
+
+    Map<String, byte[]> libraryEntries = new TreeMap<>(classEntries(libraryClasses));
+    libraryEntries.put(
+        "META-INF/MANIFEST.MF",
+        "Manifest-Version: 1.0\nMulti-Release: true\n".getBytes(StandardCharsets.UTF_8));
+    libraryEntries.put(
+        "META-INF/services/com.lib.Service",
+        "com.lib.ServiceImpl\n".getBytes(StandardCharsets.UTF_8));
+    libraryEntries.put(
+        JAVA_11_VARIANT + "com/lib/Used.class",
+        classEntries(java11Classes).get("com/lib/Used.class"));
+    libraryEntries.put(
+        JAVA_11_VARIANT + "com/lib/Unused.class", libraryEntries.get("com/lib/Unused.class"));
+    libraryEntries.put("META-INF/LIB.SF", "signature".getBytes(StandardCharsets.UTF_8));
+    libraryEntries.put("META-INF/LIB.RSA", "signature".getBytes(StandardCharsets.UTF_8));
+    libraryJar = writeJar("library-1.0.jar", libraryEntries);
+
+    Path signedClasses =
+        compile(
+            "signed",
+            List.of(),
+            Map.of("com/signed/Kept.java", "package com.signed; public class Kept {}"));
+    Map<String, byte[]> signedEntries = new TreeMap<>(classEntries(signedClasses));
+    signedEntries.put("META-INF/SIGNED.SF", "signature".getBytes(StandardCharsets.UTF_8));
+    signedEntries.put("META-INF/SIGNED.RSA", "signature".getBytes(StandardCharsets.UTF_8));
+    signedJar = writeJar("signed-1.0.jar", signedEntries);
+
+    pluginClasses =
+        compile(
+            "plugin",
+            List.of(libraryClasses, signedClasses),
+            Map.of(
+                "com/acme/AcmePlugin.java",
+                """
+                package com.acme;
+
+                @com.lib.Marker
+                public class AcmePlugin {
+                  private final com.lib.Used used = new com.lib.Used();
+                  private final Object kept = new com.signed.Kept();
+
+                  public void accept(com.lib.Parameter parameter) {}
+                }
+                """,
+                "com/acme/Helper.java",
+                "package com.acme; public class Helper { Object unused = new com.lib.Unused(); }"));
+    write(pluginClasses.resolve(BESU_PLUGIN_SERVICES), "com.acme.AcmePlugin\n");
+  }
+
+  @Test
+  void keepsTheClassesReachedFromTheBesuPluginServiceProviders() throws IOException {
+    ShrinkPluginOnlyArtifactsTask task = shrinkTask(List.of());
+    task.shrink();
+
+    Set<String> classes = classes(shrunk(task, libraryJar));
+    assertTrue(classes.contains("com/lib/Used.class"), classes.toString());
+    // Only reached as the provider of a service that a reached class loads
+    assertTrue(classes.contains("com/lib/ServiceImpl.class"), classes.toString());
+    // Only reached from a plugin class that is not a Besu plugin service provider
+    assertFalse(classes.contains("com/lib/Unused.class"), classes.toString());
+    assertTrue(entries(shrunk(task, libraryJar)).contains("META-INF/services/com.lib.Service"));
+  }
+
+  @Test
+  void keepsAllThePluginClassesAsRootsWithoutBesuPluginServiceProvider() throws IOException {
+    Files.delete(pluginClasses.resolve(BESU_PLUGIN_SERVICES));
+
+    ShrinkPluginOnlyArtifactsTask task = shrinkTask(List.of());
+    task.shrink();
+
+    Set<String> classes = classes(shrunk(task, libraryJar));
+    assertTrue(classes.contains("com/lib/Unused.class"), classes.toString());
+  }
+
+  @Test
+  void keepsTheClassesMatchingTheKeepRules() throws IOException {
+    ShrinkPluginOnlyArtifactsTask withoutRules = shrinkTask(List.of());
+    withoutRules.shrink();
+    assertFalse(classes(shrunk(withoutRules, libraryJar)).contains("com/lib/Reflected.class"));
+
+    ShrinkPluginOnlyArtifactsTask withRules = shrinkTask(List.of("com.lib.Refl*"));
+    withRules.shrink();
+    Set<String> classes = classes(shrunk(withRules, libraryJar));
+    assertTrue(classes.contains("com/lib/Reflected.class"), classes.toString());
+    assertFalse(classes.contains("com/lib/Unused.class"), classes.toString());
+  }
+
+  @Test
+  void keepsTheClassesOnlyReachedThroughADescriptorOrAnAnnotation() throws IOException {
+    ShrinkPluginOnlyArtifactsTask task = shrinkTask(List.of());
+    task.shrink();
+
+    Set<String> classes = classes(shrunk(task, libraryJar));
+    assertTrue(classes.contains("com/lib/Parameter.class"), classes.toString());
+    assertTrue(classes.contains("com/lib/Marker.class"), classes.toString());
+  }
+
+  @Test
+  void keepsOrRemovesTheMultiReleaseVariantsWithTheirClass() throws IOException {
+    ShrinkPluginOnlyArtifactsTask task = shrinkTask(List.of());
+    task.shrink();
+
+    Set<String> entries = entries(shrunk(task, libraryJar));
+    assertTrue(entries.contains(JAVA_11_VARIANT + "com/lib/Used.class"), entries.toString());
+    // Only reached from the Java 11 variant of Used
+    assertTrue(entries.contains("com/lib/Java11Only.class"), entries.toString());
+    assertFalse(entries.contains(JAVA_11_VARIANT + "com/lib/Unused.class"), entries.toString());
+  }
+
+  @Test
+  void stripsTheSignaturesOfTheShrunkJarsOnly() throws IOException {
+    ShrinkPluginOnlyArtifactsTask task = shrinkTask(List.of());
+    task.shrink();
+
+    Set<String> entries = entries(shrunk(task, libraryJar));
+    assertFalse(entries.contains("META-INF/LIB.SF"), entries.toString());
+    assertFalse(entries.contains("META-INF/LIB.RSA"), entries.toString());
+    assertTrue(entries.contains("META-INF/MANIFEST.MF"), entries.toString());
+    // A jar whose classes are all reached is left as is, with its valid signature
+    assertArrayEquals(Files.readAllBytes(signedJar), Files.readAllBytes(shrunk(task, signedJar)));
+  }
+
+  @Test
+  void writesTheSameArtifactsOnASecondRun() throws IOException {
+    ShrinkPluginOnlyArtifactsTask task = shrinkTask(List.of());
+    task.shrink();
+    byte[] firstJar = Files.readAllBytes(shrunk(task, libraryJar));
+    List<String> firstList =
+        Files.readAllLines(task.getShrunkArtifactsList().get().getAsFile().toPath());
+    List<String> firstReport = Files.readAllLines(task.getReportFile().get().getAsFile().toPath());
+
+    task.shrink();
+
+    assertArrayEquals(firstJar, Files.readAllBytes(shrunk(task, libraryJar)));
+    assertEquals(
+        firstList, Files.readAllLines(task.getShrunkArtifactsList().get().getAsFile().toPath()));
+    assertEquals(firstReport, Files.readAllLines(task.getReportFile().get().getAsFile().toPath()));
+  }
+
+  private ShrinkPluginOnlyArtifactsTask shrinkTask(final List<String> keepRules) {
+    Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+    ShrinkPluginOnlyArtifactsTask task =
+        project
+            .getTasks()
+            .register(
+                ShrinkPluginOnlyArtifactsTask.TASK_NAME,
+                ShrinkPluginOnlyArtifactsTask.class,
+                shrink -> {
+                  shrink.getMetricsService().set(BesuPluginMetricsService.register(project));
+                  shrink.getPluginClasses().from(pluginClasses);
+                  shrink.getPluginOnlyRuntimeArtifacts().from(libraryJar, signedJar);
+                  shrink.getKeepRules().set(keepRules);
+                  shrink
+                      .getShrunkArtifactsDirectory()
+                      .set(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .dir(
+                                  ShrinkPluginOnlyArtifactsTask
+                                      .SHRUNK_ARTIFACTS_DIRECTORY_RELATIVE_PATH));
+                  shrink
+                      .getShrunkArtifactsList()
+                      .set(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(
+                                  ShrinkPluginOnlyArtifactsTask
+                                      .SHRUNK_ARTIFACTS_LIST_RELATIVE_PATH));
+                  shrink
+                      .getReportFile()
+                      .set(
+                          project
+                              .getLayout()
+                              .getBuildDirectory()
+                              .file(ShrinkPluginOnlyArtifactsTask.REPORT_RELATIVE_PATH));
+                })
+            .get();
+    try {
+      Files.createDirectories(task.getReportFile().get().getAsFile().toPath().getParent());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return task;
+  }
+
+  private static Path shrunk(final ShrinkPluginOnlyArtifactsTask task, final Path artifact) {
+    return task.getShrunkArtifactsDirectory()
+        .get()
+        .getAsFile()
+        .toPath()
+        .resolve(artifact.getFileName());
+  }
+
+  private static Set<String> entries(final Path jar) throws IOException {
+    try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+      return Collections.list(zipFile.entries()).stream()
+          .map(ZipEntry::getName)
+          .collect(Collectors.toSet());
+    }
+  }
+
+  private static Set<String> classes(final Path jar) throws IOException {
+    return entries(jar).stream()
+        .filter(entry -> entry.endsWith(".class") && !entry.startsWith("META-INF/"))
+        .collect(Collectors.toSet());
+  }
+
+  /** Compiles the given sources, by path, and returns the directory of their classes. */
+  private Path compile(
+      final String name, final List<Path> classpath, final Map<String, String> sources)
+      throws IOException {
+    Path sourceDirectory = workDir.resolve(name + "-sources");
+    Path classesDirectory = workDir.resolve(name + "-classes");
+    Files.createDirectories(classesDirectory);
+    for (Map.Entry<String, String> source : sources.entrySet()) {
+      write(sourceDirectory.resolve(source.getKey()), source.getValue());
+    }
+    List<String> arguments =
+        Stream.concat(
+                Stream.of(
+                    "-d",
+                    classesDirectory.toString(),
+                    "-cp",
+                    classpath.stream()
+                        .map(Path::toString)
+                        .collect(Collectors.joining(File.pathSeparator))),
+                sources.keySet().stream().map(path -> sourceDirectory.resolve(path).toString()))
+            .toList();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertEquals(0, compiler.run(null, null, null, arguments.toArray(String[]::new)), name);
+    return classesDirectory;
+  }
+
+  private static Map<String, byte[]> classEntries(final Path classesDirectory) throws IOException {
+    Map<String, byte[]> entries = new TreeMap<>();
+    try (Stream<Path> files = Files.walk(classesDirectory)) {
+      for (Path file : files.filter(Files::isRegularFile).toList()) {
+        entries.put(
+            classesDirectory.relativize(file).toString().replace('\\', '/'),
+            Files.readAllBytes(file));
+      }
+    }
+    return entries;
+  }
+
+  private Path writeJar(final String name, final Map<String, byte[]> entries) throws IOException {
+    Path jar = workDir.resolve(name);
+    try (OutputStream out = Files.newOutputStream(jar);
+        ZipOutputStream zipOut = new ZipOutputStream(out)) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        ZipEntry zipEntry = new ZipEntry(entry.getKey());
+        zipEntry.setTime(0);
+        zipOut.putNextEntry(zipEntry);
+        zipOut.write(entry.getValue());
+        zipOut.closeEntry();
+      }
+    }
+    return jar;
+  }
+
+  private static void write(final Path file, final String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content, StandardCharsets.UTF_8);
+  }
+}